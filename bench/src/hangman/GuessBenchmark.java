@@ -0,0 +1,98 @@
+/*
+ * JMH benchmarks for evaluating guesses.
+ */
+package hangman;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks for the guess and win-check logic that Hangman.playGame runs for
+ * every letter typed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GuessBenchmark {
+
+    private static final String LETTERS = "etaoinshrdlucmfwypvbgkjqxz";
+
+    private final GameSession session = new GameSession();
+    private String[] words;
+    private int next;
+    // Each word with its e's and a's showing, for the pattern queries
+    private String[] patterns;
+    private PatternIndex index;
+    private final int[] page = new int[50];
+    private final int[] letterCounts = new int[26];
+    private final int excluded = PatternIndex.letters("rst");
+
+    @Setup
+    public void setup() {
+        Dictionary dict = new WordList(GuessBenchmark.class.getResource("/wordlist.txt")).getDictionary();
+        this.words = new String[1024];
+        int i;
+        for (i=0; i<this.words.length; i++){
+            this.words[i] = dict.getWord((int) ((long) i * dict.size() / this.words.length));
+        }
+        this.index = PatternIndex.of(dict);
+        this.patterns = new String[this.words.length];
+        for (i=0; i<this.words.length; i++){
+            this.patterns[i] = this.words[i].replaceAll("[^ae]", "_");
+        }
+    }
+
+    /**
+     * A whole game: set the word, then guess common letters until it is over.
+     */
+    @Benchmark
+    public int playGame() {
+        this.session.start(this.words[this.next++ & (this.words.length - 1)]);
+        int i = 0;
+        while (!this.session.isOver()){
+            this.session.guess(LETTERS.charAt(i++));
+        }
+        return this.session.getState();
+    }
+
+    /**
+     * One guess plus win check, on a game that is restarted when it ends.
+     */
+    @Benchmark
+    public int guess() {
+        if (this.session.getState() != GameSession.PLAYING){
+            this.session.start(this.words[this.next++ & (this.words.length - 1)]);
+        }
+        return this.session.guess(LETTERS.charAt(this.session.getGuessCount()));
+    }
+
+    /**
+     * Count the words that fit a partly revealed word.
+     */
+    @Benchmark
+    public int patternCount() {
+        return this.index.count(this.patterns[this.next++ & (this.patterns.length - 1)], this.excluded);
+    }
+
+    /**
+     * First page of the words that fit a partly revealed word.
+     */
+    @Benchmark
+    public int patternFind() {
+        return this.index.find(this.patterns[this.next++ & (this.patterns.length - 1)], this.excluded, 0, this.page);
+    }
+
+    /**
+     * What a hint costs: the fitting words and how many contain each letter.
+     */
+    @Benchmark
+    public int hint() {
+        return this.index.countLetters(this.patterns[this.next++ & (this.patterns.length - 1)], this.excluded, this.letterCounts);
+    }
+}
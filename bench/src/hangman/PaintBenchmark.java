@@ -0,0 +1,66 @@
+/*
+ * JMH benchmarks for drawing the game.
+ */
+package hangman;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks for HangCanvas.paint() drawing into an off-screen image, on the
+ * start screen and in the middle of a game. Run with -Djava.awt.headless=true.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PaintBenchmark {
+
+    private HangCanvas startScreen;
+    private HangCanvas inGame;
+    private BufferedImage image;
+    private Graphics2D g;
+
+    @Setup
+    public void setup() {
+        this.image = new BufferedImage(630, 340, BufferedImage.TYPE_INT_RGB);
+        this.g = this.image.createGraphics();
+        this.startScreen = new HangCanvas();
+        this.startScreen.setSize(630, 340);
+        this.inGame = new HangCanvas();
+        this.inGame.setSize(630, 340);
+        GameSession session = new GameSession();
+        session.start("megaphone");
+        for (char c : "eaxqz".toCharArray()){
+            session.guess(c);
+        }
+        this.inGame.setSession(session);
+        this.inGame.setGameStarted(true);
+        this.inGame.publish();
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.g.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage paintStartScreen() {
+        this.startScreen.paint(this.g);
+        return this.image;
+    }
+
+    @Benchmark
+    public BufferedImage paintGame() {
+        this.inGame.paint(this.g);
+        return this.image;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * JMH benchmarks for loading the word list and picking words from it.
+ */
+package hangman;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks for WordList against the bundled word list. getWords and
+ * selectWord go through the shared dictionary cache; countLines only counts
+ * the text list's newlines, the load* benchmarks read the list from scratch,
+ * and the stream* benchmarks pick words in one pass over the file without
+ * loading it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WordListBenchmark {
+
+    private URL textList;
+    private URL binaryList;
+    private WordList words;
+
+    @Setup
+    public void setup() throws IOException {
+        this.textList = WordListBenchmark.class.getResource("/wordlist.txt");
+        this.binaryList = BinaryDictionary.binaryPathFor(this.textList);
+        this.words = new WordList(this.textList);
+        this.words.getDictionary();
+    }
+
+    @Benchmark
+    public int countLines() throws IOException {
+        return this.words.countLines();
+    }
+
+    @Benchmark
+    public String[] getWords() {
+        return this.words.getWords();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public String selectWord() {
+        return this.words.selectWord();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public int selectIndex() {
+        return this.words.select().getIndex();
+    }
+
+    @Benchmark
+    public String streamWord() throws IOException {
+        return this.words.streamWord();
+    }
+
+    @Benchmark
+    public String[] streamWords() throws IOException {
+        return this.words.streamWords(100);
+    }
+
+    @Benchmark
+    public Dictionary loadText() throws IOException {
+        return ArrayDictionary.load(this.textList);
+    }
+
+    @Benchmark
+    public Dictionary loadMapped() throws IOException {
+        return MappedDictionary.load(this.textList);
+    }
+
+    @Benchmark
+    public Dictionary loadPacked() throws IOException {
+        return PackedWordStore.load(this.textList);
+    }
+
+    @Benchmark
+    public Dictionary loadBinary() throws IOException {
+        return BinaryDictionary.load(this.binaryList);
+    }
+}
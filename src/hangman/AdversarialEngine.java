@@ -0,0 +1,281 @@
+/*
+ * "Evil hangman": a guess engine that never settles on a word until it has to.
+ */
+package hangman;
+
+/**
+ * Guess engine that keeps every word of the secret word's length in play and
+ * answers each guess so as to leave as many of them as possible. Before a
+ * guess is applied, the remaining words are split by the pattern of
+ * positions the letter would reveal in them (no positions at all being a
+ * miss) and the biggest group is kept; the engine's word is then swapped for
+ * one from that group, so the normal guess logic, the canvas and the journal
+ * all see an ordinary word.
+ * <p>
+ * The candidates are a bitset over a LetterIndex group, like the Solver's.
+ * A word's pattern for a letter is built from the index's per-position
+ * bitmaps 64 words at a time, and patterns are counted in an open-addressing
+ * table of primitive longs that is cleared by remembering which slots were
+ * used. Nothing is allocated per guess.
+ */
+public class AdversarialEngine extends GuessEngine {
+
+    private final Dictionary dictionary;
+    private final LetterIndex index;
+    private final long[] candidates;
+    // Pattern of each word in the 64-word block being counted
+    private final long[] blockPatterns = new long[64];
+    private final PatternCounts counts;
+    // Group of the current word's length, or null when every word is fixed (no candidates)
+    private LetterIndex.Group group;
+    private int span;
+    private int remaining;
+    // Dictionary index of the current word, or -1 if it isn't from the dictionary
+    private int wordIndex = -1;
+
+    /**
+     * Pattern to count table with long keys and no boxing.
+     */
+    private static final class PatternCounts {
+        private final long[] keys;
+        private final int[] values;
+        // Slots in use, so clear() only touches those
+        private final int[] used;
+        private final int mask;
+        private int size;
+        // Count for the key 0 (a miss), which can't be stored in the table since 0 marks an empty slot
+        private int zero;
+
+        PatternCounts(int maxKeys) {
+            int capacity = Integer.highestOneBit(Math.max(2, maxKeys) * 2 - 1) << 1;
+            this.keys = new long[capacity];
+            this.values = new int[capacity];
+            this.used = new int[capacity];
+            this.mask = capacity - 1;
+        }
+
+        void add(long key, int n) {
+            if (key == 0){
+                this.zero += n;
+                return;
+            }
+            int slot = (int) mix(key) & this.mask;
+            while (this.keys[slot] != 0 && this.keys[slot] != key){
+                slot = (slot + 1) & this.mask;
+            }
+            if (this.keys[slot] == 0){
+                this.keys[slot] = key;
+                this.used[this.size++] = slot;
+            }
+            this.values[slot] += n;
+        }
+
+        void clear() {
+            int i;
+            for (i=0; i<this.size; i++){
+                this.keys[this.used[i]] = 0;
+                this.values[this.used[i]] = 0;
+            }
+            this.size = 0;
+            this.zero = 0;
+        }
+
+        // 64-bit finalizer from MurmurHash3.
+        private static long mix(long z) {
+            z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+            z = (z ^ (z >>> 33)) * 0xc4ceb93fe53e2d34L;
+            return z ^ (z >>> 33);
+        }
+    }
+
+    /**
+     * Constructor taking the words to play with and the number of wrong
+     * guesses that loses a game.
+     *
+     * @param dictionary - the words the secret word can come from.
+     * @param maxWrong - maximum number of wrong guesses.
+     */
+    public AdversarialEngine(Dictionary dictionary, int maxWrong) {
+        super(maxWrong);
+        this.dictionary = dictionary;
+        this.index = LetterIndex.of(dictionary);
+        int maxSpan = 0;
+        int maxSize = 0;
+        int len;
+        for (len=1; len<=this.index.getMaxLength(); len++){
+            LetterIndex.Group g = this.index.group(len);
+            if (g != null){
+                maxSpan = Math.max(maxSpan, g.span);
+                maxSize = Math.max(maxSize, g.size());
+            }
+        }
+        this.candidates = new long[maxSpan];
+        this.counts = new PatternCounts(maxSize);
+    }
+
+    /**
+     * Start a new game. Only the word's length matters: every dictionary
+     * word of that length made only of a-z is a candidate. If there are
+     * none, the game is played straight with the given word.
+     *
+     * @param word - a word of the length to play.
+     */
+    @Override
+    public void reset(String word) {
+        this.group = this.index.group(word.length());
+        this.remaining = 0;
+        this.wordIndex = -1;
+        if (this.group != null){
+            this.span = this.group.span;
+            int size = this.group.size();
+            int i;
+            for (i=0; i<this.span; i++){
+                this.candidates[i] = i < this.span - 1 || size % 64 == 0 ? -1L : (1L << (size % 64)) - 1;
+            }
+            // Drop words with characters outside a-z: those would start with positions showing.
+            long[][] at = this.group.at;
+            for (i=0; i<this.span; i++){
+                int pos;
+                for (pos=0; pos<this.group.length; pos++){
+                    long any = 0;
+                    int c;
+                    for (c=0; c<26; c++){
+                        any |= at[pos * 26 + c][i];
+                    }
+                    this.candidates[i] &= any;
+                }
+                this.remaining += Long.bitCount(this.candidates[i]);
+            }
+        }
+        if (this.remaining == 0){
+            this.group = null;
+            super.reset(word);
+            return;
+        }
+        int first = firstCandidate();
+        this.wordIndex = this.group.getWordIndex(first);
+        super.reset(this.dictionary.getWord(this.wordIndex));
+    }
+
+    /**
+     * Evaluate a guess, first switching to whichever answer keeps the most
+     * words in play. Ties go to a miss, then to the pattern showing the
+     * fewest positions.
+     *
+     * @param letter - the guessed character.
+     * @return hits - bit mask of the positions the letter appears in, or 0 for a wrong guess.
+     */
+    @Override
+    public long guess(char letter) {
+        int c = letter - 'a';
+        if (this.group != null && c >= 0 && c < 26 && (getGuessed() & (1 << c)) == 0 && !isLost()){
+            long pattern = partition(c);
+            narrow(c, pattern);
+            this.wordIndex = this.group.getWordIndex(firstCandidate());
+            replace(this.dictionary, this.wordIndex);
+        }
+        return super.guess(letter);
+    }
+
+    // Count the candidates by the positions c would reveal and return the biggest group's pattern.
+    private long partition(int c) {
+        PatternCounts table = this.counts;
+        table.clear();
+        long[] has = this.group.contains[c];
+        long[][] at = this.group.at;
+        int length = this.group.length;
+        int i;
+        for (i=0; i<this.span; i++){
+            long m = this.candidates[i];
+            long hit = m & has[i];
+            table.add(0, Long.bitCount(m & ~hit));
+            if (hit == 0){
+                continue;
+            }
+            int pos;
+            for (pos=0; pos<length; pos++){
+                long bits = at[pos * 26 + c][i] & hit;
+                while (bits != 0){
+                    this.blockPatterns[Long.numberOfTrailingZeros(bits)] |= 1L << pos;
+                    bits &= bits - 1;
+                }
+            }
+            while (hit != 0){
+                int n = Long.numberOfTrailingZeros(hit);
+                table.add(this.blockPatterns[n], 1);
+                this.blockPatterns[n] = 0;
+                hit &= hit - 1;
+            }
+        }
+        long best = 0;
+        int bestCount = table.zero;
+        for (i=0; i<table.size; i++){
+            int slot = table.used[i];
+            long key = table.keys[slot];
+            int count = table.values[slot];
+            if (count > bestCount || (count == bestCount && best != 0 && Long.bitCount(key) < Long.bitCount(best))){
+                best = key;
+                bestCount = count;
+            }
+        }
+        return best;
+    }
+
+    // Keep only the candidates with letter c at exactly the pattern's positions.
+    private void narrow(int c, long pattern) {
+        int count = 0;
+        int i;
+        if (pattern == 0){
+            long[] has = this.group.contains[c];
+            for (i=0; i<this.span; i++){
+                this.candidates[i] &= ~has[i];
+                count += Long.bitCount(this.candidates[i]);
+            }
+        }else{
+            long[][] at = this.group.at;
+            int length = this.group.length;
+            for (i=0; i<this.span; i++){
+                long m = this.candidates[i];
+                int pos;
+                for (pos=0; pos<length && m != 0; pos++){
+                    long bits = at[pos * 26 + c][i];
+                    m &= ((pattern >>> pos) & 1) != 0 ? bits : ~bits;
+                }
+                this.candidates[i] = m;
+                count += Long.bitCount(m);
+            }
+        }
+        this.remaining = count;
+    }
+
+    private int firstCandidate() {
+        int i;
+        for (i=0; i<this.span; i++){
+            if (this.candidates[i] != 0){
+                return (i << 6) + Long.numberOfTrailingZeros(this.candidates[i]);
+            }
+        }
+        throw new IllegalStateException("No candidate words left");
+    }
+
+    /**
+     * @return dictionary - the words the secret word comes from.
+     */
+    public Dictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * @return remaining - words still consistent with every answer so far; 0 if the word is fixed.
+     */
+    public int getRemaining() {
+        return remaining;
+    }
+
+    /**
+     * @return wordIndex - position of the current word in the dictionary, or -1 if it isn't from it.
+     */
+    public int getWordIndex() {
+        return wordIndex;
+    }
+}
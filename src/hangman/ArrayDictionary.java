@@ -0,0 +1,117 @@
+/*
+ * Dictionary backed by a plain array of Strings, read once from a newline-separated word list.
+ */
+package hangman;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Simplest Dictionary: every word held as its own String.
+ */
+public final class ArrayDictionary implements Dictionary {
+
+    private final String[] words;
+
+    /**
+     * Constructor taking the words to hold. The array is copied so the
+     * dictionary can't be changed from outside.
+     *
+     * @param words - the words, in order.
+     */
+    public ArrayDictionary(String[] words) {
+        this(words.clone(), true);
+    }
+
+    // Takes the array as it is; nothing else may keep a reference to it.
+    private ArrayDictionary(String[] words, boolean owned) {
+        this.words = words;
+    }
+
+    /**
+     * Read a newline-separated word list in a single pass.
+     *
+     * @param path - location of the word list.
+     * @return dictionary - the loaded words.
+     * @throws IOException if the list can't be read.
+     * @throws NullPointerException if path is null.
+     */
+    public static ArrayDictionary load(URL path) throws IOException, NullPointerException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader read = new BufferedReader(new InputStreamReader(Metrics.counting(path.openStream()), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = read.readLine()) != null){
+                lines.add(line);
+            }
+        }
+        return new ArrayDictionary(lines.toArray(new String[lines.size()]), true);
+    }
+
+    /**
+     * Make a new dictionary with this one's words followed by the lines of
+     * some more text, for a word list that has been appended to. Only the new
+     * lines are decoded; this dictionary is unchanged.
+     *
+     * @param buf - the appended text, from position 0 to its limit.
+     * @return dictionary - the words of both.
+     */
+    ArrayDictionary append(ByteBuffer buf) {
+        List<String> lines = new ArrayList<>();
+        int size = buf.limit();
+        int start = 0;
+        while (start < size){
+            int end = start;
+            while (end < size && buf.get(end) != '\n'){
+                end++;
+            }
+            int next = end + 1;
+            if (end > start && buf.get(end - 1) == '\r'){
+                end--;
+            }
+            byte[] line = new byte[end - start];
+            int i;
+            for (i=0; i<line.length; i++){
+                line[i] = buf.get(start + i);
+            }
+            lines.add(new String(line, StandardCharsets.UTF_8));
+            start = next;
+        }
+        String[] all = Arrays.copyOf(this.words, this.words.length + lines.size());
+        int i;
+        for (i=0; i<lines.size(); i++){
+            all[this.words.length + i] = lines.get(i);
+        }
+        return new ArrayDictionary(all, true);
+    }
+
+    @Override
+    public int size() {
+        return words.length;
+    }
+
+    @Override
+    public String getWord(int index) {
+        return words[index];
+    }
+
+    @Override
+    public long estimateBytes() {
+        long bytes = 16 + 4L * words.length;
+        for (String word : words){
+            bytes += 24 + 16 + 2L * word.length();
+        }
+        return bytes;
+    }
+
+    @Override
+    public String[] toArray() {
+        return words.clone();
+    }
+}
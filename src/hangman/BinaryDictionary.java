@@ -0,0 +1,304 @@
+/*
+ * Reads and writes the precompiled binary form of a word list.
+ */
+package hangman;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Binary dictionary format, version 3. All values are big-endian:
+ * <pre>
+ *   int    magic "HNGD"
+ *   int    version
+ *   int    word count
+ *   int    overflow word count
+ *   long   byte size of the text list it was compiled from, or -1 if unknown
+ *   long   CRC32 of that text list
+ *   int[13] packed word count per length, 0 to 12
+ *   long[] every word in the order of the text list: packed, or an overflow
+ *          marker for the next overflow word
+ *   overflow words, each an unsigned short byte length then UTF-8 bytes
+ *   long   CRC32 of everything before it
+ * </pre>
+ * A file loads with one bulk read into a PackedWordStore. Words keep their
+ * lines, so a word has the same index whichever format the list is loaded
+ * in, and journal entries made with one replay against another. A compiled
+ * list found next to a text list is only used if it was compiled from that
+ * text as it is now; once the text is edited, the text is read instead.
+ */
+public final class BinaryDictionary {
+
+    /** File extension of compiled word lists. */
+    public static final String EXTENSION = ".bin";
+
+    private static final int MAGIC = 0x484E4744;
+    private static final int VERSION = 3;
+    private static final int HEADER_BYTES = 32 + 4 * (PackedWordStore.MAX_PACKED_LENGTH + 1);
+
+    private BinaryDictionary() {
+    }
+
+    /**
+     * Size and checksum of a text word list, to tell whether a compiled list
+     * still matches it.
+     */
+    static final class Source {
+        /** For compiled lists with no known text list; matches nothing. */
+        static final Source UNKNOWN = new Source(-1, 0);
+
+        final long size;
+        final long crc;
+
+        Source(long size, long crc) {
+            this.size = size;
+            this.crc = crc;
+        }
+
+        /**
+         * Read a text list to get its size and checksum.
+         *
+         * @param path - location of the text list.
+         * @return source - its size and CRC32.
+         * @throws IOException if it can't be read.
+         */
+        static Source of(URL path) throws IOException {
+            CRC32 crc = new CRC32();
+            long size = 0;
+            byte[] buf = new byte[1 << 16];
+            try (InputStream in = path.openStream()) {
+                int n;
+                while ((n = in.read(buf)) > 0){
+                    crc.update(buf, 0, n);
+                    size += n;
+                }
+            }
+            return new Source(size, crc.getValue());
+        }
+    }
+
+    /**
+     * Find the compiled form of a text word list: the same location with the
+     * extension changed to .bin.
+     *
+     * @param textPath - location of the text word list.
+     * @return binaryPath - where the compiled list would be.
+     * @throws MalformedURLException if the new URL can't be built.
+     */
+    public static URL binaryPathFor(URL textPath) throws MalformedURLException {
+        String name = textPath.toExternalForm();
+        if (name.endsWith(EXTENSION)){
+            return textPath;
+        }
+        int dot = name.lastIndexOf('.');
+        if (dot > name.lastIndexOf('/')){
+            name = name.substring(0, dot);
+        }
+        return new URL(name + EXTENSION);
+    }
+
+    /**
+     * Load a word list, using its compiled form if there is a readable one and
+     * the text list otherwise.
+     *
+     * @param path - location of the text (or compiled) word list.
+     * @return store - the packed words.
+     * @throws IOException if neither form can be read.
+     * @throws NullPointerException if path is null.
+     */
+    public static PackedWordStore loadCompiledOrText(URL path) throws IOException, NullPointerException {
+        if (path.toExternalForm().endsWith(EXTENSION)){
+            return load(path);
+        }
+        URL binary = binaryPathFor(path);
+        Source text;
+        try {
+            text = Source.of(path);
+        } catch (IOException ex) {
+            // No text to check against; the compiled list is all there is.
+            return load(binary);
+        }
+        try {
+            return load(binary, text);
+        } catch (IOException ex) {
+            // No compiled list for this text as it is now; read the text instead.
+            return PackedWordStore.load(path);
+        }
+    }
+
+    /**
+     * Load a compiled word list.
+     *
+     * @param path - location of the compiled list.
+     * @return store - the packed words.
+     * @throws IOException if the list can't be read, or is corrupt or the wrong version.
+     */
+    public static PackedWordStore load(URL path) throws IOException {
+        return load(path, null);
+    }
+
+    /**
+     * Load a compiled word list, if it was compiled from a given text list.
+     *
+     * @param path - location of the compiled list.
+     * @param text - the text list it must have been compiled from, or null to take it whatever it came from.
+     * @return store - the packed words.
+     * @throws IOException if the list can't be read, is corrupt or the wrong version, or came from other text.
+     */
+    static PackedWordStore load(URL path, Source text) throws IOException {
+        if ("file".equals(path.getProtocol())){
+            return read(MappedDictionary.map(MappedDictionary.toPath(path)), text);
+        }
+        try (InputStream in = path.openStream()) {
+            return read(ByteBuffer.wrap(MappedDictionary.readFully(in)), text);
+        }
+    }
+
+    /**
+     * Read a compiled word list from a stream.
+     *
+     * @param in - stream holding the whole compiled list.
+     * @return store - the packed words.
+     * @throws IOException if the stream can't be read, or is corrupt or the wrong version.
+     */
+    public static PackedWordStore read(InputStream in) throws IOException {
+        return read(ByteBuffer.wrap(MappedDictionary.readFully(in)), null);
+    }
+
+    /**
+     * Decode a compiled word list.
+     *
+     * @param buf - the whole compiled list.
+     * @param text - the text list it must have been compiled from, or null to take it whatever it came from.
+     * @return store - the packed words.
+     * @throws IOException if the data is corrupt or the wrong version, or came from other text.
+     */
+    static PackedWordStore read(ByteBuffer buf, Source text) throws IOException {
+        int size = buf.limit();
+        if (size < HEADER_BYTES + 8 || buf.getInt(0) != MAGIC){
+            throw new IOException("Not a compiled word list");
+        }
+        if (buf.getInt(4) != VERSION){
+            throw new IOException("Unsupported word list version " + buf.getInt(4));
+        }
+        if (text != null && (buf.getLong(16) != text.size || buf.getLong(24) != text.crc)){
+            throw new IOException("Compiled word list is out of date");
+        }
+        CRC32 crc = new CRC32();
+        ByteBuffer body = buf.duplicate();
+        body.position(0);
+        body.limit(size - 8);
+        crc.update(body);
+        if (crc.getValue() != buf.getLong(size - 8)){
+            throw new IOException("Compiled word list checksum mismatch");
+        }
+        int count = buf.getInt(8);
+        int overflowCount = buf.getInt(12);
+        int packedCount = 0;
+        int len;
+        for (len=0; len<=PackedWordStore.MAX_PACKED_LENGTH; len++){
+            packedCount += buf.getInt(32 + 4 * len);
+        }
+        if (count < 0 || overflowCount < 0 || packedCount + overflowCount != count
+                || HEADER_BYTES + 8L * count > size - 8){
+            throw new IOException("Compiled word list header is inconsistent");
+        }
+        long[] codes = new long[count];
+        ByteBuffer words = buf.duplicate();
+        words.position(HEADER_BYTES);
+        words.limit(size - 8);
+        words.asLongBuffer().get(codes);
+        words.position(HEADER_BYTES + 8 * count);
+        // The overflow markers must number the overflow words in order
+        int next = 0;
+        int i;
+        for (i=0; i<count; i++){
+            if ((codes[i] & PackedWordStore.OVERFLOW_FLAG) == PackedWordStore.OVERFLOW_FLAG){
+                if (codes[i] != PackedWordStore.overflowCode(next++)){
+                    throw new IOException("Compiled word list overflow markers are out of order");
+                }
+            }
+        }
+        if (next != overflowCount){
+            throw new IOException("Compiled word list header is inconsistent");
+        }
+        String[] overflow = new String[overflowCount];
+        for (i=0; i<overflowCount; i++){
+            byte[] word = new byte[words.getShort() & 0xFFFF];
+            words.get(word);
+            overflow[i] = new String(word, StandardCharsets.UTF_8);
+        }
+        return new PackedWordStore(codes, overflow);
+    }
+
+    /**
+     * Write a dictionary in compiled form.
+     *
+     * @param dict - words to write.
+     * @param out - where to write them.
+     * @throws IOException if writing fails, or an overflow word is over 65535 bytes.
+     */
+    public static void write(Dictionary dict, OutputStream out) throws IOException {
+        write(dict, Source.UNKNOWN, out);
+    }
+
+    /**
+     * Write a dictionary in compiled form, recording the text list it came
+     * from so it is only used in place of that text while the text is unchanged.
+     *
+     * @param dict - words to write.
+     * @param text - the text list the words were read from, as from Source.of().
+     * @param out - where to write them.
+     * @throws IOException if writing fails, or an overflow word is over 65535 bytes.
+     */
+    static void write(Dictionary dict, Source text, OutputStream out) throws IOException {
+        PackedWordStore store = dict instanceof PackedWordStore ? (PackedWordStore) dict : PackedWordStore.of(dict);
+        int[] counts = new int[PackedWordStore.MAX_PACKED_LENGTH + 1];
+        int i;
+        for (i=0; i<store.size(); i++){
+            if (store.isPacked(i)){
+                counts[store.getLength(i)]++;
+            }
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_BYTES + 8 * store.size());
+        DataOutputStream data = new DataOutputStream(bytes);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(store.size());
+        data.writeInt(store.getOverflowCount());
+        data.writeLong(text.size);
+        data.writeLong(text.crc);
+        for (int count : counts){
+            data.writeInt(count);
+        }
+        // Overflow words are renumbered in line order, whatever slots the store gave them
+        int next = 0;
+        for (i=0; i<store.size(); i++){
+            data.writeLong(store.isPacked(i) ? store.getCode(i) : PackedWordStore.overflowCode(next++));
+        }
+        for (i=0; i<store.size(); i++){
+            if (!store.isPacked(i)){
+                byte[] word = store.getWord(i).getBytes(StandardCharsets.UTF_8);
+                if (word.length > 0xFFFF){
+                    throw new IOException("Word too long for compiled word list: " + word.length + " bytes");
+                }
+                data.writeShort(word.length);
+                data.write(word);
+            }
+        }
+        data.flush();
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        data.writeLong(crc.getValue());
+        data.flush();
+        bytes.writeTo(out);
+    }
+}
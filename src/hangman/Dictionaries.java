@@ -0,0 +1,72 @@
+/*
+ * Keeps one loaded Dictionary per word list for the whole JVM.
+ */
+package hangman;
+
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * Shared cache of loaded dictionaries. Each word list is read the first time
+ * it is asked for; later requests get the same immutable instance until the
+ * list is evicted to keep the cache within its memory budget.
+ */
+public final class Dictionaries {
+
+    // Small built-in list so the game still works if the real one can't be read.
+    private static final Dictionary FALLBACK = new ArrayDictionary(new String[]{
+        "hello","rectangle","megaphone","computer","ankles",
+        "random","superior","eight","twelve","freakish"});
+
+    // Every list loaded through here, up to -Dhangman.dictionary.cache megabytes (default 256)
+    private static final DictionaryRegistry REGISTRY =
+            new DictionaryRegistry(Long.getLong("hangman.dictionary.cache", 256) << 20);
+
+    private Dictionaries() {
+    }
+
+    /**
+     * Get the dictionary for a word list in the default format, loading it if
+     * this is the first request.
+     *
+     * @param path - location of the word list.
+     * @return dictionary - the shared dictionary for that list.
+     * @throws IOException if the list can't be read.
+     * @throws NullPointerException if path is null.
+     */
+    public static Dictionary get(URL path) throws IOException, NullPointerException {
+        return get(path, DictionaryFormat.defaultFormat());
+    }
+
+    /**
+     * Get the dictionary for a word list, loading it if this is the first request.
+     * Concurrent first requests for the same list wait for a single load.
+     *
+     * @param path - location of the word list.
+     * @param format - how the words should be held in memory.
+     * @return dictionary - the shared dictionary for that list.
+     * @throws IOException if the list can't be read.
+     * @throws NullPointerException if path is null.
+     */
+    public static Dictionary get(URL path, DictionaryFormat format) throws IOException, NullPointerException {
+        return REGISTRY.get(path, format);
+    }
+
+    /**
+     * Get the registry behind get(), e.g. for its hit, miss and eviction counts.
+     *
+     * @return registry - the shared dictionary registry.
+     */
+    public static DictionaryRegistry registry() {
+        return REGISTRY;
+    }
+
+    /**
+     * Get the small built-in dictionary used when a word list can't be read.
+     *
+     * @return fallback - the built-in dictionary.
+     */
+    public static Dictionary fallback() {
+        return FALLBACK;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Read-only view of a loaded word list that can be shared between games.
+ */
+package hangman;
+
+/**
+ * A loaded, immutable list of words. Implementations must be safe to use from
+ * any number of threads at once, since a single instance is shared by every
+ * game that uses the same word list.
+ */
+public interface Dictionary {
+
+    /**
+     * Get the number of words in the dictionary.
+     *
+     * @return size - number of words.
+     */
+    int size();
+
+    /**
+     * Get the word at a position in the dictionary.
+     *
+     * @param index - position of the word, from 0 to size()-1.
+     * @return word - the word at that position.
+     */
+    String getWord(int index);
+
+    /**
+     * Get the length of the word at a position.
+     *
+     * @param index - position of the word.
+     * @return length - number of characters in the word.
+     */
+    default int getLength(int index) {
+        return getWord(index).length();
+    }
+
+    /**
+     * Get a single letter of a word.
+     *
+     * @param index - position of the word.
+     * @param pos - position of the letter within the word.
+     * @return letter - the letter.
+     */
+    default char getLetter(int index, int pos) {
+        return getWord(index).charAt(pos);
+    }
+
+    /**
+     * Estimate how much memory the dictionary holds, for caches that are
+     * bounded by size. The default guesses from a sample of words as if
+     * each were its own String.
+     *
+     * @return bytes - approximate bytes used by the dictionary.
+     */
+    default long estimateBytes() {
+        int size = size();
+        if (size == 0){
+            return 16;
+        }
+        int step = Math.max(1, size / 256);
+        long sampled = 0;
+        int count = 0;
+        int i;
+        for (i=0; i<size; i+=step){
+            sampled += 2L * getLength(i);
+            count++;
+        }
+        // Reference, String header and fields, array header, then the characters
+        return 16 + size * (4L + 24 + 16) + sampled * size / count;
+    }
+
+    /**
+     * Copy every word in the dictionary into a new array.
+     *
+     * @return words - array of all the words, in dictionary order.
+     */
+    default String[] toArray() {
+        String[] words = new String[size()];
+        int i;
+        for (i=0; i<words.length; i++){
+            words[i] = getWord(i);
+        }
+        return words;
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Build-time tool that turns a text word list into the compiled binary format.
+ */
+package hangman;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Command line entry point used by the build to compile wordlist.txt. It
+ * also writes the word bucket index (output name with .idx) so the game
+ * doesn't have to score the words at startup.
+ * Usage: DictionaryCompiler &lt;input.txt&gt; &lt;output.bin&gt;
+ */
+public final class DictionaryCompiler {
+
+    private DictionaryCompiler() {
+    }
+
+    /**
+     * Compile a text word list.
+     *
+     * @param args - input text file and output binary file.
+     * @throws IOException if the input can't be read or the output can't be written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2){
+            System.err.println("Usage: DictionaryCompiler <input.txt> <output.bin>");
+            System.exit(2);
+        }
+        File input = new File(args[0]);
+        File output = new File(args[1]);
+        PackedWordStore store = PackedWordStore.load(input.toURI().toURL());
+        // Recorded so the game can tell when the text has changed since
+        BinaryDictionary.Source source = BinaryDictionary.Source.of(input.toURI().toURL());
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(output))) {
+            BinaryDictionary.write(store, source, out);
+        }
+        String name = output.getName();
+        int dot = name.lastIndexOf('.');
+        File index = new File(output.getAbsoluteFile().getParentFile(), (dot < 0 ? name : name.substring(0, dot)) + WordBuckets.EXTENSION);
+        try (OutputStream out = new FileOutputStream(index)) {
+            // The compiled list keeps the text's word order, so this index fits both
+            WordBuckets.build(store).write(out);
+        }
+        System.out.println("Compiled " + store.size() + " words (" + store.getOverflowCount()
+                + " overflow) from " + input + " to " + output + " (" + output.length() + " bytes) and " + index);
+    }
+}
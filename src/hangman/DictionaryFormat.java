@@ -0,0 +1,72 @@
+/*
+ * The ways a word list can be loaded into memory.
+ */
+package hangman;
+
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * Storage backends for a Dictionary. The default can be chosen with the
+ * hangman.dictionary system property (for example -Dhangman.dictionary=mapped).
+ */
+public enum DictionaryFormat {
+
+    /** One String per word, read with a single pass over the list. */
+    TEXT {
+        @Override
+        Dictionary load(URL path) throws IOException {
+            return ArrayDictionary.load(path);
+        }
+    },
+
+    /** Memory-mapped bytes plus an int offset per word; words are decoded on demand. */
+    MAPPED {
+        @Override
+        Dictionary load(URL path) throws IOException {
+            return MappedDictionary.load(path);
+        }
+    },
+
+    /** One long per a-z word, five bits per letter, with an overflow array for everything else. */
+    PACKED {
+        @Override
+        Dictionary load(URL path) throws IOException {
+            return PackedWordStore.load(path);
+        }
+    },
+
+    /** Packed words read in one go from the compiled .bin next to the list, or from the text if there isn't one. */
+    BINARY {
+        @Override
+        Dictionary load(URL path) throws IOException {
+            return BinaryDictionary.loadCompiledOrText(path);
+        }
+    };
+
+    /**
+     * Load a word list in this format.
+     *
+     * @param path - location of the word list.
+     * @return dictionary - the loaded words.
+     * @throws IOException if the list can't be read.
+     */
+    abstract Dictionary load(URL path) throws IOException;
+
+    /**
+     * Get the format named by the hangman.dictionary system property, or BINARY if it isn't set.
+     *
+     * @return format - the default format.
+     */
+    public static DictionaryFormat defaultFormat() {
+        String name = System.getProperty("hangman.dictionary");
+        if (name == null){
+            return BINARY;
+        }
+        try {
+            return valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            return BINARY;
+        }
+    }
+}
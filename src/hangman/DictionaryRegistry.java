@@ -0,0 +1,225 @@
+/*
+ * Size-bounded cache of loaded dictionaries, keyed by word list location.
+ */
+package hangman;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Loads word lists on first use and keeps them for later requests, up to a
+ * memory budget. Each entry is charged Dictionary.estimateBytes(); when the
+ * total goes over the budget the least recently used lists are dropped (and
+ * loaded again if they are asked for later). Games already holding a dropped
+ * dictionary keep using it, since dictionaries are immutable.
+ * <p>
+ * Concurrent first requests for the same list share one load: the first
+ * caller puts an unfinished future in the table and reads the file, the
+ * others wait on that future. A failed load is removed so the next request
+ * tries again. Lookups take one short lock on the table; loads happen outside it.
+ */
+public final class DictionaryRegistry {
+
+    private final long maxBytes;
+    // Access ordered, so iteration starts at the least recently used entry. Guarded by this.
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // Sum of the sizes of the loaded entries. Guarded by this.
+    private long bytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private static final class Entry {
+        final CompletableFuture<Dictionary> future = new CompletableFuture<>();
+        // 0 until the load has finished
+        long bytes;
+    }
+
+    /**
+     * Constructor taking the memory budget.
+     *
+     * @param maxBytes - most estimated bytes to keep loaded. The most recent list is kept even if it alone is bigger.
+     */
+    public DictionaryRegistry(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Get the dictionary for a word list, loading it if it isn't cached.
+     *
+     * @param path - location of the word list.
+     * @param format - how the words should be held in memory.
+     * @return dictionary - the loaded words.
+     * @throws IOException if the list can't be read.
+     * @throws NullPointerException if path is null.
+     */
+    public Dictionary get(URL path, DictionaryFormat format) throws IOException, NullPointerException {
+        String key = key(path, format);
+        Entry entry;
+        boolean loader = false;
+        synchronized (this){
+            entry = this.entries.get(key);
+            if (entry == null){
+                entry = new Entry();
+                this.entries.put(key, entry);
+                loader = true;
+            }
+        }
+        if (!loader){
+            this.hits.increment();
+            return await(entry);
+        }
+        this.misses.increment();
+        Dictionary loaded;
+        try {
+            loaded = load(path, format);
+        } catch (Throwable ex) {
+            // Errors too (e.g. running out of memory on a big list), or later callers would wait forever
+            synchronized (this){
+                this.entries.remove(key, entry);
+            }
+            entry.future.completeExceptionally(ex);
+            throw ex;
+        }
+        long size = Math.max(1, loaded.estimateBytes());
+        synchronized (this){
+            // Charge it unless it was dropped by clear() while loading
+            if (this.entries.get(key) == entry){
+                entry.bytes = size;
+                this.bytes += size;
+                evict(entry);
+            }
+        }
+        entry.future.complete(loaded);
+        return loaded;
+    }
+
+    /**
+     * Replace the cached dictionary for a word list, e.g. after the file has
+     * been reloaded. Later requests get the new one; callers still waiting
+     * on a load in progress get whatever that load returns.
+     *
+     * @param path - location of the word list.
+     * @param format - the format it is cached under.
+     * @param dictionary - the new words.
+     */
+    public void put(URL path, DictionaryFormat format, Dictionary dictionary) {
+        Entry entry = new Entry();
+        entry.future.complete(dictionary);
+        entry.bytes = Math.max(1, dictionary.estimateBytes());
+        String key = key(path, format);
+        synchronized (this){
+            Entry old = this.entries.put(key, entry);
+            if (old != null){
+                this.bytes -= old.bytes;
+            }
+            this.bytes += entry.bytes;
+            evict(entry);
+        }
+    }
+
+    // Keyed by the URL's text form; URL.equals/hashCode can do DNS lookups.
+    private static String key(URL path, DictionaryFormat format) {
+        return format.name() + ':' + path.toExternalForm();
+    }
+
+    private static Dictionary load(URL path, DictionaryFormat format) throws IOException {
+        if (!Metrics.ENABLED){
+            return format.load(path);
+        }
+        long start = System.nanoTime();
+        Dictionary loaded = format.load(path);
+        Metrics.DICTIONARY_LOAD.since(start);
+        Metrics.DICTIONARY_LOADS.increment();
+        return loaded;
+    }
+
+    private static Dictionary await(Entry entry) throws IOException {
+        try {
+            return entry.future.join();
+        } catch (CompletionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException){
+                throw new IOException(cause.getMessage(), cause);
+            }
+            if (cause instanceof RuntimeException){
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error){
+                throw (Error) cause;
+            }
+            throw ex;
+        }
+    }
+
+    // Drop least recently used loaded entries until the total fits, never the one just added.
+    private void evict(Entry keep) {
+        Iterator<Entry> it = this.entries.values().iterator();
+        while (this.bytes > this.maxBytes && it.hasNext()){
+            Entry e = it.next();
+            if (e == keep || e.bytes == 0){
+                continue;
+            }
+            it.remove();
+            this.bytes -= e.bytes;
+            this.evictions.increment();
+        }
+    }
+
+    /**
+     * Drop every cached dictionary. Loads in progress finish but aren't kept.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+        this.bytes = 0;
+    }
+
+    /**
+     * @return size - number of lists cached or loading.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return bytes - estimated bytes of the cached dictionaries.
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return maxBytes - the memory budget.
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return hits - requests answered from the cache, including ones that waited for another caller's load.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return misses - requests that had to load the list.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return evictions - lists dropped to stay within the budget.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+}
@@ -0,0 +1,471 @@
+/*
+ * Append-only file of finished games, for stats that survive a restart and for replays.
+ */
+package hangman;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Binary journal of finished games. Layout (big-endian):
+ * <pre>
+ *   int    magic "HNGJ"
+ *   int    version
+ *   then one record per game:
+ *   byte   flags (bit 0 set for a win)
+ *   byte   word length
+ *   byte   guess count (at most MAX_GUESSES are kept)
+ *   byte   player name length in bytes
+ *   int    word index in the dictionary (its line in the word list, the same in every format), or -1 if unknown
+ *   long   time the game ended, in milliseconds since the epoch
+ *   bytes  player name, UTF-8
+ *   bytes  guesses, 5 bits each, low bits first: 0-25 for a-z, 26 for anything else
+ * </pre>
+ * append() only copies the record into a memory buffer, so it never waits on
+ * the disk. A background thread swaps the buffer out, writes it with one
+ * FileChannel write and forces it, so every game that finished during one
+ * commit interval shares one fsync. A crash can lose at most the last
+ * interval; a record cut off part way is dropped when the journal is reopened.
+ */
+public final class GameJournal implements AutoCloseable {
+
+    /** Most guesses stored for one game. */
+    public static final int MAX_GUESSES = 255;
+
+    private static final int MAGIC = 0x484E474A;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int RECORD_BYTES = 16;
+    private static final int OTHER = 26;
+
+    private final FileChannel channel;
+    private final long commitMillis;
+    private final Thread flusher;
+    // Records not yet handed to the flusher, and the one being written; both guarded by this
+    private ByteBuffer active = ByteBuffer.allocate(1 << 16);
+    private ByteBuffer writing = ByteBuffer.allocate(1 << 16);
+    private long appended;
+    private long durable;
+    private boolean closed;
+    private boolean flushRequested;
+    private IOException failure;
+    // Encoded form of the last player name, since it is nearly always the same player
+    private String lastName;
+    private byte[] lastNameBytes;
+
+    private GameJournal(FileChannel channel, long commitMillis) {
+        this.channel = channel;
+        this.commitMillis = commitMillis;
+        this.flusher = new Thread(this::flushLoop, "hangman-journal");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Open a journal for appending, creating it if it doesn't exist. A record
+     * left incomplete by a crash is cut off.
+     *
+     * @param file - the journal file.
+     * @param commitMillis - longest time a finished game waits before being forced to disk.
+     * @return journal - the open journal.
+     * @throws IOException if the file can't be opened or isn't a journal.
+     */
+    public static GameJournal open(Path file, long commitMillis) throws IOException {
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (ch.size() == 0){
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                header.putInt(MAGIC).putInt(VERSION).flip();
+                while (header.hasRemaining()){
+                    ch.write(header);
+                }
+                ch.force(true);
+            }else{
+                long end;
+                try (Reader reader = new Reader(ch, false)) {
+                    while (reader.next()){
+                        // just find the end of the last whole record
+                    }
+                    end = reader.getPosition();
+                }
+                if (end < ch.size()){
+                    ch.truncate(end);
+                }
+                ch.position(end);
+            }
+            return new GameJournal(ch, Math.max(1, commitMillis));
+        } catch (IOException|RuntimeException ex) {
+            ch.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Record a finished game. Returns at once; the record reaches the disk
+     * with the next group commit.
+     *
+     * @param session - a session whose game is over.
+     * @param wordIndex - the word's position in its dictionary, or -1 if unknown.
+     * @param player - the player's name.
+     */
+    public void append(GameSession session, int wordIndex, String player) {
+        int count = Math.min(session.getGuessCount(), MAX_GUESSES);
+        int length = Math.min(session.getWord().length(), 255);
+        boolean won = session.getState() == GameSession.WON;
+        long time = System.currentTimeMillis();
+        synchronized (this){
+            if (this.closed || this.failure != null){
+                return;
+            }
+            byte[] name = nameBytes(player);
+            ByteBuffer buf = reserve(RECORD_BYTES + name.length + (count * 5 + 7) / 8);
+            buf.put((byte) (won ? 1 : 0));
+            buf.put((byte) length);
+            buf.put((byte) count);
+            buf.put((byte) name.length);
+            buf.putInt(wordIndex);
+            buf.putLong(time);
+            buf.put(name);
+            long bits = 0;
+            int used = 0;
+            int i;
+            for (i=0; i<count; i++){
+                int c = session.getGuess(i) - 'a';
+                bits |= (long) (c >= 0 && c < 26 ? c : OTHER) << used;
+                used += 5;
+                while (used >= 8){
+                    buf.put((byte) bits);
+                    bits >>>= 8;
+                    used -= 8;
+                }
+            }
+            if (used > 0){
+                buf.put((byte) bits);
+            }
+            this.appended++;
+        }
+    }
+
+    private byte[] nameBytes(String player) {
+        if (!player.equals(this.lastName)){
+            byte[] bytes = player.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > 255){
+                // Cut at a character boundary
+                int end = 255;
+                while ((bytes[end] & 0xC0) == 0x80){
+                    end--;
+                }
+                bytes = Arrays.copyOf(bytes, end);
+            }
+            this.lastName = player;
+            this.lastNameBytes = bytes;
+        }
+        return this.lastNameBytes;
+    }
+
+    private ByteBuffer reserve(int bytes) {
+        if (this.active.remaining() < bytes){
+            // The flusher is behind; grow rather than make the game wait for it.
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(this.active.capacity() * 2, this.active.position() + bytes));
+            this.active.flip();
+            bigger.put(this.active);
+            this.active = bigger;
+        }
+        return this.active;
+    }
+
+    /**
+     * Wait until every game appended so far has been forced to disk.
+     *
+     * @throws IOException if writing the journal failed.
+     */
+    public synchronized void flush() throws IOException {
+        long target = this.appended;
+        this.flushRequested = true;
+        notifyAll();
+        while (this.durable < target && this.failure == null && this.flusher.isAlive()){
+            try {
+                wait();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted waiting for the journal", ex);
+            }
+        }
+        if (this.failure != null){
+            throw this.failure;
+        }
+    }
+
+    /**
+     * Flush everything appended and close the file.
+     *
+     * @throws IOException if the last write or the close fails.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            synchronized (this){
+                this.closed = true;
+                notifyAll();
+            }
+            try {
+                this.flusher.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            this.channel.close();
+        }
+    }
+
+    private void flushLoop() {
+        while (true){
+            ByteBuffer batch;
+            long target;
+            synchronized (this){
+                // Let every game finishing during the interval join this commit.
+                long deadline = System.currentTimeMillis() + this.commitMillis;
+                long left;
+                while (!this.closed && !this.flushRequested && (left = deadline - System.currentTimeMillis()) > 0){
+                    waitQuietly(left);
+                }
+                this.flushRequested = false;
+                if (this.durable == this.appended){
+                    if (this.closed){
+                        return;
+                    }
+                    continue;
+                }
+                batch = this.active;
+                this.active = this.writing;
+                this.active.clear();
+                this.writing = batch;
+                target = this.appended;
+            }
+            try {
+                batch.flip();
+                while (batch.hasRemaining()){
+                    this.channel.write(batch);
+                }
+                this.channel.force(false);
+            } catch (IOException ex) {
+                synchronized (this){
+                    this.failure = ex;
+                    notifyAll();
+                }
+                return;
+            }
+            synchronized (this){
+                this.durable = target;
+                notifyAll();
+            }
+        }
+    }
+
+    private void waitQuietly(long millis) {
+        try {
+            wait(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            this.closed = true;
+        }
+    }
+
+    /**
+     * Rebuild scores from a journal. A missing file counts as an empty one.
+     *
+     * @param file - the journal file.
+     * @param board - scoreboard to add every recorded game to.
+     * @return games - number of games read.
+     * @throws IOException if the file exists but can't be read or isn't a journal.
+     */
+    public static long replay(Path file, Scoreboard board) throws IOException {
+        if (!file.toFile().exists()){
+            return 0;
+        }
+        long games = 0;
+        try (Reader reader = open(file)) {
+            while (reader.next()){
+                board.record(reader.getPlayer(), reader.getLength(), reader.isWon());
+                games++;
+            }
+        }
+        return games;
+    }
+
+    /**
+     * Open a journal for reading from the start.
+     *
+     * @param file - the journal file.
+     * @return reader - reader positioned before the first record.
+     * @throws IOException if the file can't be opened or isn't a journal.
+     */
+    public static Reader open(Path file) throws IOException {
+        return new Reader(FileChannel.open(file, StandardOpenOption.READ), true);
+    }
+
+    /**
+     * Sequential reader. next() moves to the next record and the getters read
+     * that record; nothing is allocated per record except by getPlayer().
+     */
+    public static final class Reader implements AutoCloseable {
+        private final FileChannel channel;
+        private final boolean owner;
+        private final ByteBuffer buf = ByteBuffer.allocate(1 << 20);
+        private final byte[] name = new byte[255];
+        private final byte[] guesses = new byte[(MAX_GUESSES * 5 + 7) / 8 + 1];
+        private long position;
+        private boolean eof;
+        private boolean won;
+        private int length;
+        private int count;
+        private int nameLength;
+        private int wordIndex;
+        private long time;
+
+        Reader(FileChannel channel, boolean owner) throws IOException {
+            this.channel = channel;
+            this.owner = owner;
+            this.channel.position(0);
+            this.buf.limit(0);
+            if (!fill(HEADER_BYTES)){
+                throw new EOFException("Not a game journal: too short");
+            }
+            if (this.buf.getInt() != MAGIC){
+                throw new IOException("Not a game journal");
+            }
+            int version = this.buf.getInt();
+            if (version != VERSION){
+                throw new IOException("Unsupported journal version " + version);
+            }
+            this.position = HEADER_BYTES;
+        }
+
+        /**
+         * Move to the next record.
+         *
+         * @return found - false at the end of the journal, or at a record cut off by a crash.
+         * @throws IOException if reading fails.
+         */
+        public boolean next() throws IOException {
+            if (!fill(RECORD_BYTES)){
+                return false;
+            }
+            int at = this.buf.position();
+            int flags = this.buf.get(at) & 0xFF;
+            int nameBytes = this.buf.get(at + 3) & 0xFF;
+            int guessCount = this.buf.get(at + 2) & 0xFF;
+            int size = RECORD_BYTES + nameBytes + (guessCount * 5 + 7) / 8;
+            if (!fill(size)){
+                return false;
+            }
+            // Filling may have moved the unread bytes to the front
+            at = this.buf.position();
+            this.won = (flags & 1) != 0;
+            this.length = this.buf.get(at + 1) & 0xFF;
+            this.count = guessCount;
+            this.nameLength = nameBytes;
+            this.buf.position(at + 4);
+            this.wordIndex = this.buf.getInt();
+            this.time = this.buf.getLong();
+            this.buf.get(this.name, 0, nameBytes);
+            this.buf.get(this.guesses, 0, (guessCount * 5 + 7) / 8);
+            this.position += size;
+            return true;
+        }
+
+        // Make sure the buffer holds at least n unread bytes; false if the file ends first.
+        private boolean fill(int n) throws IOException {
+            while (this.buf.remaining() < n){
+                if (this.eof){
+                    return false;
+                }
+                this.buf.compact();
+                if (this.channel.read(this.buf) < 0){
+                    this.eof = true;
+                }
+                this.buf.flip();
+            }
+            return true;
+        }
+
+        /**
+         * @return position - file offset just past the last record read.
+         */
+        public long getPosition() {
+            return position;
+        }
+
+        /**
+         * @return won - true if the game was won.
+         */
+        public boolean isWon() {
+            return won;
+        }
+
+        /**
+         * @return length - length of the word played.
+         */
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * @return wordIndex - the word's position in its dictionary, or -1 if unknown.
+         */
+        public int getWordIndex() {
+            return wordIndex;
+        }
+
+        /**
+         * @return time - when the game ended, in milliseconds since the epoch.
+         */
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * @return player - the player's name.
+         */
+        public String getPlayer() {
+            return new String(name, 0, nameLength, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * @return guessCount - number of guesses stored.
+         */
+        public int getGuessCount() {
+            return count;
+        }
+
+        /**
+         * Get one guess of the current record.
+         *
+         * @param i - which guess, from 0 to getGuessCount()-1.
+         * @return letter - the letter guessed, or GuessEngine.BLANK if it wasn't a-z.
+         */
+        public char getGuess(int i) {
+            if (i < 0 || i >= this.count){
+                throw new IndexOutOfBoundsException("No guess " + i);
+            }
+            int bit = i * 5;
+            int pair = (this.guesses[bit >>> 3] & 0xFF) | (this.guesses[(bit >>> 3) + 1] & 0xFF) << 8;
+            int c = (pair >>> (bit & 7)) & 31;
+            return c < 26 ? (char) ('a' + c) : GuessEngine.BLANK;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (this.owner){
+                this.channel.close();
+            }
+        }
+    }
+}
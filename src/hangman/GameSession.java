@@ -0,0 +1,215 @@
+/*
+ * One game of Hangman with no ties to the console or the window.
+ */
+package hangman;
+
+import java.util.Arrays;
+
+/**
+ * Headless game state machine. A session starts IDLE, goes to PLAYING when it
+ * is given a word, and ends WON or LOST. Guesses return a result code so any
+ * front end (console, window, network, bot) can drive it the same way.
+ * A session belongs to one thread at a time; it does no locking itself.
+ */
+public final class GameSession {
+
+    /** Maximum number of wrong guesses before a game loss occurs. */
+    public static final int MAX_WRONG = 6;
+
+    /** Most guesses remembered per game, as many as the journal keeps; later ones are only counted. */
+    public static final int MAX_HISTORY = GameJournal.MAX_GUESSES;
+
+    /** No word yet, or the last game has been cleared. */
+    public static final int IDLE = 0;
+    /** A game is in progress. */
+    public static final int PLAYING = 1;
+    /** The last game was won. */
+    public static final int WON = 2;
+    /** The last game was lost. */
+    public static final int LOST = 3;
+
+    /** guess() result: the letter wasn't in the word. */
+    public static final int MISS = 0;
+    /** guess() result: the letter was in the word. */
+    public static final int HIT = 1;
+    /** guess() result: the letter was in the word and finished it. */
+    public static final int WIN = 2;
+    /** guess() result: the letter wasn't in the word and that was the last wrong guess allowed. */
+    public static final int LOSS = 3;
+    /** guess() result: there is no game in progress, so nothing happened. */
+    public static final int NOT_PLAYING = -1;
+
+    private final int id;
+    private final GuessEngine engine;
+    private int state = IDLE;
+    private int guessCount;
+    // Letters guessed this game, in order; grows if a game runs past its length, up to MAX_HISTORY
+    private char[] history = new char[32];
+    // System.nanoTime() at start(), for the game duration metric
+    private long startedAt;
+
+    /**
+     * Constructor for a session that isn't part of a pool.
+     */
+    public GameSession() {
+        this(-1);
+    }
+
+    /**
+     * Constructor for a session that isn't part of a pool and plays with its
+     * own guess engine, e.g. an AdversarialEngine.
+     *
+     * @param engine - guess state to play with; its maximum wrong guesses should be MAX_WRONG.
+     */
+    public GameSession(GuessEngine engine) {
+        this(-1, engine);
+    }
+
+    /**
+     * Constructor taking the session's slot in its pool.
+     *
+     * @param id - pool slot, or -1 if the session isn't pooled.
+     */
+    GameSession(int id) {
+        this(id, new GuessEngine(MAX_WRONG));
+    }
+
+    private GameSession(int id, GuessEngine engine) {
+        this.id = id;
+        this.engine = engine;
+    }
+
+    /**
+     * Start a new game, dropping whatever state the last one left behind.
+     *
+     * @param word - the secret word.
+     */
+    public void start(String word) {
+        this.engine.reset(word);
+        this.guessCount = 0;
+        this.state = PLAYING;
+        if (Metrics.ENABLED){
+            Metrics.GAMES_STARTED.increment();
+            this.startedAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * Clear the session back to IDLE, with no word.
+     */
+    public void clear() {
+        this.engine.reset("");
+        this.guessCount = 0;
+        this.state = IDLE;
+    }
+
+    /**
+     * Make a guess.
+     *
+     * @param letter - guessed character, or GuessEngine.BLANK for an empty guess.
+     * @return result - HIT, MISS, WIN, LOSS, or NOT_PLAYING if no game is in progress.
+     */
+    public int guess(char letter) {
+        if (!Metrics.ENABLED){
+            return apply(letter);
+        }
+        long start = System.nanoTime();
+        int result = apply(letter);
+        long end = System.nanoTime();
+        if (result != NOT_PLAYING){
+            Metrics.GUESS.record(end - start);
+        }
+        if (result == WIN){
+            Metrics.GAMES_WON.increment();
+            Metrics.GAME.record(end - this.startedAt);
+        }else if (result == LOSS){
+            Metrics.GAMES_LOST.increment();
+            Metrics.GAME.record(end - this.startedAt);
+        }
+        return result;
+    }
+
+    private int apply(char letter) {
+        if (this.state != PLAYING){
+            return NOT_PLAYING;
+        }
+        // Repeated right guesses never end a game, so only the first MAX_HISTORY are kept
+        if (this.guessCount < MAX_HISTORY){
+            if (this.guessCount == this.history.length){
+                this.history = Arrays.copyOf(this.history, Math.min(this.guessCount * 2, MAX_HISTORY));
+            }
+            this.history[this.guessCount] = letter;
+        }
+        this.guessCount++;
+        if (this.engine.guess(letter) == 0){
+            if (this.engine.isLost()){
+                this.state = LOST;
+                return LOSS;
+            }
+            return MISS;
+        }
+        if (this.engine.isWon()){
+            this.state = WON;
+            return WIN;
+        }
+        return HIT;
+    }
+
+    /**
+     * @return id - this session's slot in its pool, or -1 if it isn't pooled.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return state - IDLE, PLAYING, WON or LOST.
+     */
+    public int getState() {
+        return state;
+    }
+
+    /**
+     * @return isOver - true if the last game has been won or lost.
+     */
+    public boolean isOver() {
+        return state == WON || state == LOST;
+    }
+
+    /**
+     * @return guessCount - guesses made in the current game.
+     */
+    public int getGuessCount() {
+        return guessCount;
+    }
+
+    /**
+     * Get one of this game's guesses.
+     *
+     * @param i - which guess, from 0 to the smaller of getGuessCount() and MAX_HISTORY, less 1.
+     * @return letter - the character guessed, or GuessEngine.BLANK for an empty guess.
+     */
+    public char getGuess(int i) {
+        if (i < 0 || i >= Math.min(this.guessCount, MAX_HISTORY)){
+            throw new IndexOutOfBoundsException("No guess " + i);
+        }
+        return this.history[i];
+    }
+
+    /**
+     * Get the guess state: the word, which positions are showing and the
+     * wrong guesses. Callers should only read from it; guesses go through guess().
+     *
+     * @return engine - guess state of the current game.
+     */
+    public GuessEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * @return word - the secret word of the current game.
+     */
+    public String getWord() {
+        return engine.getWord();
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Immutable picture of everything the window shows, handed from the game to the renderer.
+ */
+package hangman;
+
+/**
+ * What the canvas needs to draw one frame, copied out of the live game. The
+ * game thread builds a new snapshot after every change and publishes it
+ * through one volatile reference; the renderer only ever reads snapshots, so
+ * it needs no locks and can't see a guess half applied. The renderer can also
+ * skip a frame when the snapshot is the same object it drew last time.
+ */
+public final class GameSnapshot {
+
+    /** The start screen with no score. */
+    public static final GameSnapshot START = new GameSnapshot(false, "", 0, "", GameSession.IDLE, Scoreboard.Snapshot.EMPTY, "");
+
+    private final boolean started;
+    private final String word;
+    private final long visible;
+    private final String wrongLetters;
+    private final int state;
+    private final Scoreboard.Snapshot score;
+    private final String hint;
+
+    private GameSnapshot(boolean started, String word, long visible, String wrongLetters, int state, Scoreboard.Snapshot score, String hint) {
+        this.started = started;
+        this.word = word;
+        this.visible = visible;
+        this.wrongLetters = wrongLetters;
+        this.state = state;
+        this.score = score;
+        this.hint = hint;
+    }
+
+    /**
+     * Copy the state of a game. Call from the thread playing it.
+     *
+     * @param session - the game.
+     * @param started - true if the game screen is showing, false for the start screen.
+     * @param score - the score to show.
+     * @return snapshot - the copy.
+     */
+    public static GameSnapshot of(GameSession session, boolean started, Scoreboard.Snapshot score) {
+        return of(session, started, score, "");
+    }
+
+    /**
+     * Copy the state of a game, with a hint to show under it. Call from the
+     * thread playing it.
+     *
+     * @param session - the game.
+     * @param started - true if the game screen is showing, false for the start screen.
+     * @param score - the score to show.
+     * @param hint - text to show under the word, or "" for none.
+     * @return snapshot - the copy.
+     */
+    public static GameSnapshot of(GameSession session, boolean started, Scoreboard.Snapshot score, String hint) {
+        GuessEngine engine = session.getEngine();
+        // Once the game is lost the whole word is shown
+        long visible = engine.isLost() ? engine.getFullMask() : engine.getRevealed();
+        char[] wrong = new char[engine.getWrongCount()];
+        int i;
+        for (i=0; i<wrong.length; i++){
+            wrong[i] = engine.getWrongLetter(i);
+        }
+        return new GameSnapshot(started, engine.getWord(), visible, new String(wrong), session.getState(), score, hint);
+    }
+
+    /**
+     * @return started - true for the game screen, false for the start screen.
+     */
+    public boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * @return word - the secret word.
+     */
+    public String getWord() {
+        return word;
+    }
+
+    /**
+     * @return visible - bit mask of the word positions to show.
+     */
+    public long getVisible() {
+        return visible;
+    }
+
+    /**
+     * @return wrongCount - number of wrong guesses.
+     */
+    public int getWrongCount() {
+        return wrongLetters.length();
+    }
+
+    /**
+     * Get one of the wrong guesses.
+     *
+     * @param i - which wrong guess, from 0.
+     * @return letter - the letter guessed, or GuessEngine.BLANK for an empty guess.
+     */
+    public char getWrongLetter(int i) {
+        return wrongLetters.charAt(i);
+    }
+
+    /**
+     * @return state - GameSession.IDLE, PLAYING, WON or LOST.
+     */
+    public int getState() {
+        return state;
+    }
+
+    /**
+     * @return score - the score to show.
+     */
+    public Scoreboard.Snapshot getScore() {
+        return score;
+    }
+
+    /**
+     * @return hint - text to show under the word, or "" for none.
+     */
+    public String getHint() {
+        return hint;
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Pre-rendered text glyphs for one font, so drawing text is an image copy.
+ */
+package hangman;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+
+/**
+ * Every printable ASCII character of a font, rasterized once in white onto a
+ * transparent image laid out as a grid of equal cells. Drawing a character is
+ * then one drawImage() from its cell: no String, no glyph lookup and no text
+ * layout per frame. Characters outside the atlas fall back to drawString().
+ */
+public final class GlyphAtlas {
+
+    private static final char FIRST = ' ';
+    private static final char LAST = '~';
+    private static final int COLUMNS = 16;
+
+    private final Font font;
+    private final BufferedImage image;
+    private final int[] advances = new int[LAST - FIRST + 1];
+    private final int ascent;
+    private final int cellWidth;
+    private final int cellHeight;
+    // Room around each glyph for pixels that reach past its advance or ascent
+    private final int pad;
+    // Digits of a number being drawn, so drawNumber needn't make a String
+    private final char[] digits = new char[20];
+
+    /**
+     * Constructor that rasterizes the font.
+     *
+     * @param font - font to draw with.
+     * @param gc - screen the atlas will be drawn to, or null for an ordinary image.
+     */
+    public GlyphAtlas(Font font, GraphicsConfiguration gc) {
+        this.font = font;
+        BufferedImage scratch = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D measure = scratch.createGraphics();
+        FontMetrics fm = measure.getFontMetrics(font);
+        measure.dispose();
+        int widest = 0;
+        char c;
+        for (c=FIRST; c<=LAST; c++){
+            this.advances[c - FIRST] = fm.charWidth(c);
+            widest = Math.max(widest, this.advances[c - FIRST]);
+        }
+        this.pad = Math.max(2, font.getSize() / 4);
+        this.ascent = fm.getAscent();
+        this.cellWidth = widest + 2 * this.pad;
+        this.cellHeight = fm.getAscent() + fm.getDescent() + 2 * this.pad;
+        int rows = (this.advances.length + COLUMNS - 1) / COLUMNS;
+        this.image = gc != null
+                ? gc.createCompatibleImage(COLUMNS * this.cellWidth, rows * this.cellHeight, Transparency.TRANSLUCENT)
+                : new BufferedImage(COLUMNS * this.cellWidth, rows * this.cellHeight, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = this.image.createGraphics();
+        g.setFont(font);
+        g.setColor(Color.WHITE);
+        char[] one = new char[1];
+        for (c=FIRST; c<=LAST; c++){
+            int cell = c - FIRST;
+            one[0] = c;
+            g.drawChars(one, 0, 1, (cell % COLUMNS) * this.cellWidth + this.pad,
+                    (cell / COLUMNS) * this.cellHeight + this.pad + this.ascent);
+        }
+        g.dispose();
+    }
+
+    /**
+     * Draw one character in white.
+     *
+     * @param g - Graphics object.
+     * @param c - character to draw.
+     * @param x - left edge, as for drawString.
+     * @param y - baseline, as for drawString.
+     * @return advance - how far the next character should start to the right.
+     */
+    public int draw(Graphics g, char c, int x, int y) {
+        if (c < FIRST || c > LAST){
+            g.setColor(Color.WHITE);
+            g.setFont(this.font);
+            g.drawString(String.valueOf(c), x, y);
+            return g.getFontMetrics().charWidth(c);
+        }
+        int cell = c - FIRST;
+        int sx = (cell % COLUMNS) * this.cellWidth;
+        int sy = (cell / COLUMNS) * this.cellHeight;
+        int dx = x - this.pad;
+        int dy = y - this.ascent - this.pad;
+        g.drawImage(this.image, dx, dy, dx + this.cellWidth, dy + this.cellHeight,
+                sx, sy, sx + this.cellWidth, sy + this.cellHeight, null);
+        return this.advances[cell];
+    }
+
+    /**
+     * Draw a string in white, one glyph after another.
+     *
+     * @param g - Graphics object.
+     * @param text - text to draw.
+     * @param x - left edge, as for drawString.
+     * @param y - baseline, as for drawString.
+     */
+    public void draw(Graphics g, String text, int x, int y) {
+        int i;
+        for (i=0; i<text.length(); i++){
+            x += draw(g, text.charAt(i), x, y);
+        }
+    }
+
+    /**
+     * Draw a non-negative number in white.
+     *
+     * @param g - Graphics object.
+     * @param n - the number.
+     * @param x - left edge, as for drawString.
+     * @param y - baseline, as for drawString.
+     */
+    public void drawNumber(Graphics g, long n, int x, int y) {
+        int count = 0;
+        do{
+            this.digits[count++] = (char) ('0' + n % 10);
+            n /= 10;
+        }while(n > 0);
+        while (count > 0){
+            x += draw(g, this.digits[--count], x, y);
+        }
+    }
+
+    /**
+     * @return font - the font the atlas was drawn with.
+     */
+    public Font getFont() {
+        return font;
+    }
+}
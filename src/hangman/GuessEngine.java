@@ -0,0 +1,246 @@
+/*
+ * Bitmask-based evaluation of hangman guesses against one secret word.
+ */
+package hangman;
+
+/**
+ * Holds the guess state for one word. When a word is set, the engine works out
+ * which letters it contains (one bit per letter a-z) and where each letter
+ * appears (one bit per position). A guess is then a couple of mask operations
+ * and the win check is a single comparison; nothing is allocated per guess.
+ * Words can be up to 64 characters long.
+ */
+public class GuessEngine {
+
+    /** Passed to guess() for an empty guess: it counts as wrong but isn't shown. */
+    public static final char BLANK = '\0';
+
+    /** Longest word the position masks can hold. */
+    public static final int MAX_LENGTH = 64;
+
+    private final int maxWrong;
+
+    // The secret word and its length; word is null after replace() until it is asked for
+    private String word = "";
+    private int length = 0;
+    // Where a replaced word's text comes from
+    private Dictionary source;
+    private int sourceIndex;
+
+    // Bit i set if letter ('a'+i) is in the word
+    private int presence;
+    // positions[i] has bit p set if letter ('a'+i) is at position p
+    private final long[] positions = new long[26];
+    // One bit per position in the word
+    private long fullMask;
+    // Positions that are showing
+    private long revealed;
+    // Letters a-z that have been guessed, right or wrong
+    private int guessed;
+
+    // Wrong guesses in the order they were made; BLANK for empty guesses
+    private final char[] wrongLetters;
+    private int wrongCount;
+
+    /**
+     * Constructor taking the number of wrong guesses that loses a game.
+     *
+     * @param maxWrong - maximum number of wrong guesses.
+     */
+    public GuessEngine(int maxWrong) {
+        this.maxWrong = maxWrong;
+        this.wrongLetters = new char[maxWrong];
+    }
+
+    /**
+     * Start a new game with a new secret word. Characters other than a-z can't
+     * be guessed, so they are showing from the start.
+     *
+     * @param word - the secret word.
+     */
+    public void reset(String word) {
+        if (word.length() > MAX_LENGTH){
+            throw new IllegalArgumentException("Word longer than " + MAX_LENGTH + " characters: " + word);
+        }
+        this.word = word;
+        this.length = word.length();
+        this.fullMask = this.length == MAX_LENGTH ? -1L : (1L << this.length) - 1;
+        this.presence = 0;
+        this.revealed = 0;
+        this.guessed = 0;
+        this.wrongCount = 0;
+        int i;
+        for (i=0; i<26; i++){
+            this.positions[i] = 0;
+        }
+        for (i=0; i<this.wrongLetters.length; i++){
+            this.wrongLetters[i] = BLANK;
+        }
+        for (i=0; i<this.length; i++){
+            int letter = word.charAt(i) - 'a';
+            if (letter >= 0 && letter < 26){
+                this.positions[letter] |= 1L << i;
+                this.presence |= 1 << letter;
+            }else{
+                this.revealed |= 1L << i;
+            }
+        }
+    }
+
+    /**
+     * Swap the secret word for another of the same length, keeping the
+     * guesses made so far. The new word must agree with everything already
+     * revealed and contain no character outside a-z. Its letters are read
+     * from the dictionary one at a time and its text only when getWord()
+     * asks, so nothing is allocated.
+     *
+     * @param dictionary - the dictionary holding the new word.
+     * @param index - position of the new word in the dictionary.
+     */
+    protected void replace(Dictionary dictionary, int index) {
+        if (dictionary.getLength(index) != this.length){
+            throw new IllegalArgumentException("Replacement word is not " + this.length + " characters long");
+        }
+        this.word = null;
+        this.source = dictionary;
+        this.sourceIndex = index;
+        this.presence = 0;
+        int i;
+        for (i=0; i<26; i++){
+            this.positions[i] = 0;
+        }
+        for (i=0; i<this.length; i++){
+            int letter = dictionary.getLetter(index, i) - 'a';
+            this.positions[letter] |= 1L << i;
+            this.presence |= 1 << letter;
+        }
+    }
+
+    /**
+     * Evaluate a guess. A letter that is in the word reveals every position it
+     * appears in; anything else (including BLANK, capitals and repeated wrong
+     * letters) is a wrong guess.
+     *
+     * @param letter - the guessed character.
+     * @return hits - bit mask of the positions the letter appears in, or 0 for a wrong guess.
+     */
+    public long guess(char letter) {
+        int i = letter - 'a';
+        long hits = 0;
+        if (i >= 0 && i < 26){
+            this.guessed |= 1 << i;
+            hits = this.positions[i];
+        }
+        if (hits == 0){
+            if (this.wrongCount < this.maxWrong){
+                this.wrongLetters[this.wrongCount] = letter;
+            }
+            this.wrongCount++;
+        }else{
+            this.revealed |= hits;
+        }
+        return hits;
+    }
+
+    /**
+     * Find out whether a letter is in the word, without making a guess.
+     *
+     * @param letter - the character to check.
+     * @return contains - true if the letter is in the word.
+     */
+    public boolean contains(char letter) {
+        int i = letter - 'a';
+        return i >= 0 && i < 26 && (this.presence & (1 << i)) != 0;
+    }
+
+    /**
+     * @return isWon - true once every position in the word is showing.
+     */
+    public boolean isWon() {
+        return this.revealed == this.fullMask;
+    }
+
+    /**
+     * @return isLost - true once the maximum number of wrong guesses has been made.
+     */
+    public boolean isLost() {
+        return this.wrongCount >= this.maxWrong;
+    }
+
+    /**
+     * @param pos - position in the word.
+     * @return isRevealed - true if the letter at that position is showing.
+     */
+    public boolean isRevealed(int pos) {
+        return (this.revealed & (1L << pos)) != 0;
+    }
+
+    /**
+     * @return revealed - bit mask of the positions that are showing.
+     */
+    public long getRevealed() {
+        return revealed;
+    }
+
+    /**
+     * @return fullMask - bit mask with one bit set for every position in the word.
+     */
+    public long getFullMask() {
+        return fullMask;
+    }
+
+    /**
+     * @return presence - bit mask of the letters a-z in the word.
+     */
+    public int getPresence() {
+        return presence;
+    }
+
+    /**
+     * @return guessed - bit mask of the letters a-z guessed so far.
+     */
+    public int getGuessed() {
+        return guessed;
+    }
+
+    /**
+     * @return word - the secret word.
+     */
+    public String getWord() {
+        if (word == null){
+            word = source.getWord(sourceIndex);
+        }
+        return word;
+    }
+
+    /**
+     * @return length - number of characters in the secret word.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return wrongCount - number of wrong guesses so far.
+     */
+    public int getWrongCount() {
+        return wrongCount;
+    }
+
+    /**
+     * @return maxWrong - number of wrong guesses that loses the game.
+     */
+    public int getMaxWrong() {
+        return maxWrong;
+    }
+
+    /**
+     * Get one of the wrong guesses, in the order they were made.
+     *
+     * @param i - which wrong guess, from 0.
+     * @return letter - the guess, or BLANK if it was empty.
+     */
+    public char getWrongLetter(int i) {
+        return wrongLetters[i];
+    }
+}
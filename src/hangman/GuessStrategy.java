@@ -0,0 +1,52 @@
+/*
+ * A way of choosing guesses, for computer players.
+ */
+package hangman;
+
+/**
+ * Guessing strategy for an automated player. A strategy is told the word
+ * length, asked for letters and told where each one hit; it is used by one
+ * thread at a time and can be reused for any number of games.
+ */
+public interface GuessStrategy {
+
+    /**
+     * Start a new game.
+     *
+     * @param length - length of the secret word.
+     */
+    void start(int length);
+
+    /**
+     * Pick the next letter to guess.
+     *
+     * @return letter - the guess.
+     */
+    char nextGuess();
+
+    /**
+     * Learn the result of a guess.
+     *
+     * @param letter - the letter guessed.
+     * @param hits - bit mask of the positions it was found at; 0 for a miss.
+     */
+    void update(char letter, long hits);
+
+    /**
+     * Play a game to the end. The session must already have been started.
+     *
+     * @param session - the game to play.
+     * @return state - GameSession.WON or GameSession.LOST.
+     */
+    default int play(GameSession session) {
+        GuessEngine engine = session.getEngine();
+        start(engine.getLength());
+        while (!session.isOver()){
+            char letter = nextGuess();
+            long before = engine.getRevealed();
+            session.guess(letter);
+            update(letter, engine.getRevealed() & ~before);
+        }
+        return session.getState();
+    }
+}
@@ -5,6 +5,9 @@
 package hangman;
 
 import java.awt.*;
+import java.awt.image.BufferStrategy;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicBoolean;
 import static java.awt.Font.PLAIN;
 
 /**
@@ -15,6 +18,7 @@ import static java.awt.Font.PLAIN;
 public class HangCanvas extends Canvas{
     
     // gameStarted will be true when we get past the startup screen
+    // (like session and score, only the game thread uses it; the renderer reads snapshots)
     private boolean gameStarted = false;
     
     // X and Y values for the top-left of the gallows; a lot of the drawing positioning is based on this
@@ -22,33 +26,40 @@ public class HangCanvas extends Canvas{
     private final int gallowsY = 40;
     
     // Maximum number of wrong guesses before a game loss occurs
-    private final int MAX_WRONG = 6;
+    private final int MAX_WRONG = GameSession.MAX_WRONG;
     
-    // Public counter of the current number of wrong guesses
-    public int failCount = 0;
-    
-    // How long is the word?
-    private int wordLength = 0;
-    
-    // What is the word? Should always get set elsewhere, arbitrary default here.
-    private String word = "a";
-    
-    // Integer array to represent positions of correctly guessed letters.
-    // Initially all 0s; when a letter is correctly guessed, each position it appears in will be set to 1.
-    private int[] correctLetters;
-    
-    // Array to hold the incorrect guesses for display
-    private String[] wrongGuesses = new String[this.MAX_WRONG];
+    // The game being displayed; the canvas only reads from it, on the game thread
+    private GameSession session = new GameSession();
     
     // Selection of fonts for the display
     private final Font hangFont = new Font("Courier New", PLAIN, 28);
     private final Font smallerFont = new Font("Courier New", PLAIN, 20);
     private final Font smallestFont = new Font("Courier New", PLAIN, 16);
+    // The same fonts rasterized once, so text is drawn by copying glyph images
+    private GlyphAtlas hangGlyphs;
+    private GlyphAtlas smallerGlyphs;
+    private GlyphAtlas smallestGlyphs;
     
-    // Session score tracking and repeat playing options
-    private static int numWins = 0;
-    private static int numLosses = 0;
+    // Score shown on the scoreboard, and repeat playing options
+    private Scoreboard.Snapshot score = Scoreboard.Snapshot.EMPTY;
     private boolean keepPlaying = false;
+    // Hint shown under the word, "" for none
+    private String hint = "";
+
+    // Pre-rendered backgrounds: everything that doesn't change during a screen
+    private BufferedImage startLayer;
+    private BufferedImage gameLayer;
+    // The current frame, kept between frames so a new one only draws what changed
+    private BufferedImage frame;
+    private boolean fullRedraw = true;
+    // Latest published state; the only thing the renderer reads
+    private volatile GameSnapshot snapshot = GameSnapshot.START;
+    // What the frame image shows right now
+    private GameSnapshot shown;
+    private int shownWrong;
+    private long shownVisible;
+    // True while a frame has been asked for but not drawn yet; later requests join it
+    private final AtomicBoolean framePending = new AtomicBoolean();
     
     /**
      * Default constructor, just does what the parent Canvas would do
@@ -63,12 +74,9 @@ public class HangCanvas extends Canvas{
      */
     public void resetState(){
         this.gameStarted = false;
-        this.wordLength = 0;
-        this.word = "a";
-        this.wrongGuesses = new String[this.MAX_WRONG];
         this.keepPlaying = false;
-        this.failCount = 0;
-        this.repaint();
+        this.hint = "";
+        this.publish();
     }
 
     /**
@@ -90,30 +98,30 @@ public class HangCanvas extends Canvas{
     }
 
     /**
-     * Set the word to be guessed in this game.
+     * Set the game session this canvas displays.
      *
-     * @param word - the secret word.
+     * @param session - the session to draw.
      */
-    public void setWord(String word) {
-        this.word = word;
+    public void setSession(GameSession session) {
+        this.session = session;
     }
 
     /**
-     * Get the word to be guessed
+     * Get the game session this canvas displays.
      *
-     * @return word - the word.
+     * @return session - the session being drawn.
      */
-    public String getWord() {
-        return word;
+    public GameSession getSession() {
+        return session;
     }
 
     /**
-     * Tell the canvas how long the word is.
+     * Get the word to be guessed
      *
-     * @param wordLength - length of the secret word.
+     * @return word - the word.
      */
-    public void setWordLength(int wordLength) {
-        this.wordLength = wordLength;
+    public String getWord() {
+        return this.session.getWord();
     }
 
     /**
@@ -126,135 +134,303 @@ public class HangCanvas extends Canvas{
     }
 
     /**
-     * Get the array of which letter positions have been correctly guessed.
+     * Set the score shown on the scoreboard.
      *
-     * @return correctLetters - array of 0s and 1s, where 1s
-     * correspond to positions of correct guesses in the word.
+     * @param score - the player's results.
      */
-    public int[] getAllCorrectLetters() {
-        return correctLetters;
+    public void setScore(Scoreboard.Snapshot score) {
+        this.score = score;
     }
 
     /**
-     * Tell the canvas which letter positions have been correctly guessed.
-     *
-     * @param correctLetters - array of 0s and 1s, where 1s
-     * correspond to positions of correct guesses in the word. 
+     * @return score - the results shown on the scoreboard.
      */
-    public void setAllCorrectLetters(int[] correctLetters) {
-        this.correctLetters = correctLetters;
+    public Scoreboard.Snapshot getScore() {
+        return score;
     }
 
     /**
-     * Set an element of the correctLetters array to 1,
-     * indicating that the letter at that position in the word
-     * has been correctly guessed.
+     * Set the hint shown under the word. It is drawn from the next publish().
      *
-     * @param i - index corresponding to position of correct guess.
+     * @param hint - the text, or "" for none.
      */
-    public void setCorrectLetter(int i) {
-        this.correctLetters[i] = 1;
+    public void setHint(String hint) {
+        this.hint = hint;
     }
 
     /**
-     * Add a letter to the wrongGuesses array, to be displayed
-     * under "Incorrect Guesses" during gameplay.
-     *
-     * @param i - index into the array.
-     * @param wrongGuess - letter to add.
+     * @return hint - the text shown under the word, or "" for none.
      */
-    public void setWrongGuess(int i, String wrongGuess) {
-        this.wrongGuesses[i] = wrongGuess;
+    public String getHint() {
+        return hint;
     }
 
     /**
-     * Add 1 to the win column for the scoreboard.
+     * Find out whether to start another game.
+     *
+     * @return keepPlaying - will be true if the user wanted to play again.
      */
-    public static void addWin() {
-        HangCanvas.numWins++;
+    public boolean isKeepPlaying() {
+        return keepPlaying;
     }
 
     /**
-     * Add 1 to the loss column for the scoreboard.
+     * Tell the canvas whether the user wants to play again.
+     *
+     * @param keepPlaying - true if another game should start.
      */
-    public static void addLoss() {
-        HangCanvas.numLosses++;
+    public void setKeepPlaying(boolean keepPlaying) {
+        this.keepPlaying = keepPlaying;
+    }
+    
+    /**
+     * Show the current game state: copy it into an immutable snapshot, hand
+     * that to the renderer and ask for a frame. Call from the game thread
+     * after the session, score or screen changes.
+     */
+    public void publish(){
+        this.snapshot = GameSnapshot.of(this.session, this.gameStarted, this.score, this.hint);
+        requestFrame();
     }
 
     /**
-     * @return numWins - number of wins so far
+     * @return snapshot - the state the renderer will draw next.
      */
-    public static int getNumWins() {
-        return numWins;
+    public GameSnapshot getSnapshot() {
+        return snapshot;
     }
 
     /**
-     * @return numLosses - number of losses so far
+     * Ask for a frame. Requests made before the frame is drawn are merged
+     * into it, so one guess gives one frame however many times this is
+     * called. The frame is drawn on the event thread straight to the
+     * canvas's BufferStrategy.
      */
-    public static int getNumLosses() {
-        return numLosses;
+    private void requestFrame(){
+        if (this.framePending.compareAndSet(false, true)){
+            EventQueue.invokeLater(this::renderFrame);
+        }
     }
 
     /**
-     * Find out whether to start another game.
-     *
-     * @return keepPlaying - will be true if the user wanted to play again.
+     * Draws a frame with active rendering. Runs on the event thread.
      */
-    public boolean isKeepPlaying() {
-        return keepPlaying;
+    private void renderFrame(){
+        this.framePending.set(false);
+        if (!this.isDisplayable()){
+            return;
+        }
+        BufferStrategy strategy = this.getBufferStrategy();
+        if (strategy != null && this.snapshot == this.shown && !this.fullRedraw && !strategy.contentsLost()){
+            // Nothing new to show
+            return;
+        }
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        if (strategy == null){
+            this.createBufferStrategy(2);
+            strategy = this.getBufferStrategy();
+        }
+        BufferedImage image = prepareFrame();
+        do{
+            do{
+                Graphics g = strategy.getDrawGraphics();
+                try{
+                    g.drawImage(image, 0, 0, null);
+                }finally{
+                    g.dispose();
+                }
+            }while(strategy.contentsRestored());
+            strategy.show();
+        }while(strategy.contentsLost());
+        Toolkit.getDefaultToolkit().sync();
+        if (Metrics.ENABLED){
+            Metrics.PAINT.since(start);
+        }
     }
 
     /**
-     * Tell the canvas whether the user wants to play again.
+     * Canvas.update() clears the canvas before painting, which flickers.
+     * Every frame covers the whole canvas, so skip the clear.
      *
-     * @param keepPlaying - true if another game should start.
+     * @param g - Graphics object.
      */
-    public void setKeepPlaying(boolean keepPlaying) {
-        this.keepPlaying = keepPlaying;
+    @Override
+    public void update (Graphics g){
+        paint(g);
     }
-    
+
     /**
-     * Performs all drawing operations on the canvas.
+     * Paints the canvas when the system asks (first show, uncovered, resized).
      *
      * @param g - Graphics object.
      */
     @Override
     public void paint (Graphics g){
-        g.setColor(Color.BLACK);
-        g.fillRect(0, 0, this.getWidth(), this.getHeight());
-        g.setColor(Color.WHITE);
-        drawGallows(g, this.gallowsX, this.gallowsY);
-        if(!this.gameStarted){
+        if (!Metrics.ENABLED){
+            g.drawImage(prepareFrame(), 0, 0, null);
+            return;
+        }
+        long start = System.nanoTime();
+        g.drawImage(prepareFrame(), 0, 0, null);
+        Metrics.PAINT.since(start);
+    }
+
+    /**
+     * Brings the frame image up to date. A new screen, new word or new score
+     * starts again from a background layer; otherwise only the body parts,
+     * wrong guesses and letters added since the last frame are drawn.
+     *
+     * @return frame - image of the whole canvas.
+     */
+    private BufferedImage prepareFrame(){
+        int width = Math.max(1, this.getWidth());
+        int height = Math.max(1, this.getHeight());
+        if (this.frame == null || this.frame.getWidth() != width || this.frame.getHeight() != height){
+            this.frame = createLayer(width, height);
+            GraphicsConfiguration gc = this.getGraphicsConfiguration();
+            this.hangGlyphs = new GlyphAtlas(this.hangFont, gc);
+            this.smallerGlyphs = new GlyphAtlas(this.smallerFont, gc);
+            this.smallestGlyphs = new GlyphAtlas(this.smallestFont, gc);
+            this.startLayer = null;
+            this.gameLayer = null;
+            this.fullRedraw = true;
+        }
+        GameSnapshot snap = this.snapshot;
+        if (snap == this.shown && !this.fullRedraw){
+            return this.frame;
+        }
+        GameSnapshot last = this.shown;
+        Graphics g = this.frame.getGraphics();
+        try{
+            if (!snap.isStarted()){
+                if (this.fullRedraw || last.isStarted() || snap.getScore() != last.getScore()){
+                    g.drawImage(startLayer(), 0, 0, null);
+                    drawScore(g, snap.getScore());
+                }
+                this.fullRedraw = false;
+                this.shown = snap;
+                return this.frame;
+            }
+            long visible = snap.getVisible();
+            int wrong = Math.min(snap.getWrongCount(), this.MAX_WRONG);
+            if (this.fullRedraw || !last.isStarted() || snap.getWord() != last.getWord() || snap.getScore() != last.getScore()
+                    || snap.getHint() != last.getHint()
+                    || wrong < this.shownWrong || (this.shownVisible & ~visible) != 0){
+                g.drawImage(gameLayer(), 0, 0, null);
+                drawDashes(g, snap.getWord().length());
+                drawScore(g, snap.getScore());
+                this.smallestGlyphs.draw(g, snap.getHint(), 25, 295);
+                this.shownWrong = 0;
+                this.shownVisible = 0;
+                this.fullRedraw = false;
+            }
+            int i;
+            for (i=this.shownWrong; i<wrong; i++){
+                drawBodyPart(g, i + 1);
+                drawWrongGuess(g, snap, i);
+            }
+            drawLetters(g, snap.getWord(), visible & ~this.shownVisible);
+            this.shownWrong = wrong;
+            this.shownVisible = visible;
+            this.shown = snap;
+        }finally{
+            g.dispose();
+        }
+        return this.frame;
+    }
+
+    /**
+     * Makes an image in the screen's pixel format, so drawing it is a plain copy.
+     *
+     * @param width - image width.
+     * @param height - image height.
+     * @return image - new opaque image.
+     */
+    private BufferedImage createLayer(int width, int height){
+        GraphicsConfiguration gc = this.getGraphicsConfiguration();
+        if (gc == null){
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        }
+        return gc.createCompatibleImage(width, height, Transparency.OPAQUE);
+    }
+
+    /**
+     * Gets the start screen background: gallows, full figure, rules and scoreboard grid.
+     *
+     * @return layer - the pre-rendered image.
+     */
+    private BufferedImage startLayer(){
+        if (this.startLayer == null){
+            this.startLayer = createLayer(this.frame.getWidth(), this.frame.getHeight());
+            Graphics g = this.startLayer.getGraphics();
+            clearLayer(g);
+            drawGallows(g, this.gallowsX, this.gallowsY);
             drawStartScreen(g);
             drawScoreboard(g);
-        } else {
-            drawDashes(g);
-            drawLetters(g);
-            drawWrongGuesses(g);
+            g.dispose();
+        }
+        return this.startLayer;
+    }
+
+    /**
+     * Gets the game background: gallows, incorrect guesses box and scoreboard grid.
+     *
+     * @return layer - the pre-rendered image.
+     */
+    private BufferedImage gameLayer(){
+        if (this.gameLayer == null){
+            this.gameLayer = createLayer(this.frame.getWidth(), this.frame.getHeight());
+            Graphics g = this.gameLayer.getGraphics();
+            clearLayer(g);
+            drawGallows(g, this.gallowsX, this.gallowsY);
+            this.smallerGlyphs.draw(g, "Incorrect guesses:", 25, this.gallowsY+20);
+            g.drawRoundRect(20, this.gallowsY, 300, 100, 15, 15);
             drawScoreboard(g);
-            
-            // Switch intentionally will fall through each state if the failCount is high enough
-            switch(this.failCount){
-                case 6:
-                    drawLegR(g, this.gallowsX, this.gallowsY);
-                    // At this point the game has been lost; set all letters to correct so we can easily print them.
-                    for (int i = 0; i<this.wordLength; i++){
-                        setCorrectLetter(i);
-                    }
-                    drawLetters(g);
-                case 5:
-                    drawLegL(g, this.gallowsX, this.gallowsY);
-                case 4:
-                    drawArmR(g, this.gallowsX, this.gallowsY);
-                case 3:
-                    drawArmL(g, this.gallowsX, this.gallowsY);
-                case 2:
-                    drawTorso(g, this.gallowsX, this.gallowsY);
-                case 1:
-                    drawHead(g, this.gallowsX, this.gallowsY, 20);
-                default:
-                    break;
-            }
+            g.dispose();
+        }
+        return this.gameLayer;
+    }
+
+    /**
+     * Fills a layer with the background colour and sets up for drawing in white.
+     *
+     * @param g - Graphics object of the layer.
+     */
+    private void clearLayer(Graphics g){
+        g.setColor(Color.BLACK);
+        g.fillRect(0, 0, this.frame.getWidth(), this.frame.getHeight());
+        g.setColor(Color.WHITE);
+    }
+
+    /**
+     * Draws the body part added by a wrong guess.
+     *
+     * @param g - Graphics object.
+     * @param wrong - which wrong guess, from 1 to MAX_WRONG.
+     */
+    private void drawBodyPart(Graphics g, int wrong){
+        g.setColor(Color.WHITE);
+        switch(wrong){
+            case 1:
+                drawHead(g, this.gallowsX, this.gallowsY, 20);
+                break;
+            case 2:
+                drawTorso(g, this.gallowsX, this.gallowsY);
+                break;
+            case 3:
+                drawArmL(g, this.gallowsX, this.gallowsY);
+                break;
+            case 4:
+                drawArmR(g, this.gallowsX, this.gallowsY);
+                break;
+            case 5:
+                drawLegL(g, this.gallowsX, this.gallowsY);
+                break;
+            case 6:
+                drawLegR(g, this.gallowsX, this.gallowsY);
+                break;
+            default:
+                break;
         }
     }
     
@@ -264,7 +440,6 @@ public class HangCanvas extends Canvas{
      * @param g - Graphics object.
      */
     private void drawStartScreen(Graphics g){
-        g.setFont(this.hangFont);
         int halfHead = 20;
         drawHead(g, this.gallowsX, this.gallowsY, halfHead);
         drawTorso(g, this.gallowsX, this.gallowsY);
@@ -280,18 +455,17 @@ public class HangCanvas extends Canvas{
         int i;
         for (i=0; i<message.length(); i++){            
             startX += (dashWidth + gap) * i;        
-            g.drawString(String.valueOf(message.charAt(i)), startX, startY);
+            this.hangGlyphs.draw(g, message.charAt(i), startX, startY);
             startX = 25;         
         }
-        g.setFont(this.smallerFont);
-        g.drawString("Welcome to Hangman", 25, this.gallowsY+20);
-        g.setFont(this.smallestFont);
-        g.drawString("Rules of the game:", 25, this.gallowsY+50);
-        g.drawString("Guess the secret word, one letter", 25, this.gallowsY+70);
-        g.drawString("at a time. Bad guesses will add", 25, this.gallowsY+90);
-        g.drawString("body parts to the gallows!", 25, this.gallowsY+110);
-        g.drawString("Words consist of 5-10 lowercase", 25, this.gallowsY+130);
-        g.drawString("letters from a-z.", 25, this.gallowsY+150);
+        this.smallerGlyphs.draw(g, "Welcome to Hangman", 25, this.gallowsY+20);
+        this.smallestGlyphs.draw(g, "Rules of the game:", 25, this.gallowsY+50);
+        this.smallestGlyphs.draw(g, "Guess the secret word, one letter", 25, this.gallowsY+70);
+        this.smallestGlyphs.draw(g, "at a time. Bad guesses will add", 25, this.gallowsY+90);
+        this.smallestGlyphs.draw(g, "body parts to the gallows!", 25, this.gallowsY+110);
+        this.smallestGlyphs.draw(g, "Words consist of 5-10 lowercase", 25, this.gallowsY+130);
+        this.smallestGlyphs.draw(g, "letters from a-z.", 25, this.gallowsY+150);
+        this.smallestGlyphs.draw(g, "Type ? for a hint.", 25, this.gallowsY+170);
     }
     
     /**
@@ -383,76 +557,79 @@ public class HangCanvas extends Canvas{
      * Draws placeholder dashes for un-guessed letters in the word.
      *
      * @param g - Graphics object.
+     * @param length - length of the word.
      */
-    private void drawDashes(Graphics g){
+    private void drawDashes(Graphics g, int length){
+        g.setColor(Color.WHITE);
         int dashWidth = 28;
         int gap = 10;
         int startX = 20;
         int startY = 270;
         int i;
-        for (i=0; i<this.wordLength; i++ ){
+        for (i=0; i<length; i++ ){
             g.drawLine(startX, startY, startX+dashWidth, startY);
             startX += dashWidth + gap;
         }
     }
     
     /**
-     * Draws all letters in the word that have been correctly guessed.
+     * Draws letters of the word: the ones that have been correctly guessed,
+     * or the whole word once the game has been lost.
      *
      * @param g - Graphics object.
+     * @param word - the secret word.
+     * @param positions - bit mask of the positions to draw.
      */
-    private void drawLetters(Graphics g){
-        g.setFont(this.hangFont);
-        String[] letters = new String[this.wordLength];
+    private void drawLetters(Graphics g, String word, long positions){
         int dashWidth = 28;
         int gap = 10;
         int startX = 25;
         int startY = 260;
-        int i;
-        for (i=0; i<this.wordLength; i++){            
-            if (this.getAllCorrectLetters()[i] == 1){
-                startX += (dashWidth + gap) * i;
-                letters[i] = String.valueOf(this.word.charAt(i));            
-                g.drawString(letters[i], startX, startY);
-                startX = 25;
-            }            
-        }       
+        while (positions != 0){
+            int i = Long.numberOfTrailingZeros(positions);
+            positions &= positions - 1;
+            this.hangGlyphs.draw(g, word.charAt(i), startX + (dashWidth + gap) * i, startY);
+        }
     }
     
     /**
-     * Draws the letters that have been guessed and are not in the word.
+     * Draws one letter that has been guessed and is not in the word.
      *
      * @param g - Graphics object.
+     * @param snap - state of the game.
+     * @param i - which wrong guess, from 0.
      */
-    private void drawWrongGuesses(Graphics g){
-        g.setFont(this.smallerFont);
+    private void drawWrongGuess(Graphics g, GameSnapshot snap, int i){
+        char letter = snap.getWrongLetter(i);
+        if (letter == GuessEngine.BLANK){
+            return;
+        }
         int dashWidth = 20;
         int gap = 10;
         int startX = 25;
         int startY = 100;
-        int i;
-        g.drawString("Incorrect guesses:", 25, this.gallowsY+20);
-        g.drawRoundRect(20, this.gallowsY, 300, 100, 15, 15);
-        for (i=0; i<this.wrongGuesses.length; i++){
-            if (this.wrongGuesses[i] != null){
-                startX += (dashWidth + gap) * i;           
-                g.drawString(this.wrongGuesses[i], startX, startY);
-                startX = 25;
-            }
-        }      
+        this.smallerGlyphs.draw(g, letter, startX + (dashWidth + gap) * i, startY);
     }
     
     /**
-     * Draws the scoreboard of wins and losses for this session.
+     * Draws the win and loss counts into the scoreboard grid.
+     *
+     * @param g - Graphics object.
+     * @param shown - the score to show.
+     */
+    private void drawScore(Graphics g, Scoreboard.Snapshot shown){
+        this.smallerGlyphs.drawNumber(g, shown.getWins(), this.gallowsX-90, this.gallowsY+38);
+        this.smallerGlyphs.drawNumber(g, shown.getLosses(), this.gallowsX-60, this.gallowsY+38);
+    }
+
+    /**
+     * Draws the scoreboard grid and its W and L headings.
      *
      * @param g - Graphics object.
      */
     private void drawScoreboard(Graphics g){
-        g.setFont(this.smallerFont);
-        g.drawString("W", this.gallowsX-90, this.gallowsY+15);
-        g.drawString("L", this.gallowsX-60, this.gallowsY+15);
-        g.drawString(String.valueOf(numWins), this.gallowsX-90, this.gallowsY+38);
-        g.drawString(String.valueOf(numLosses), this.gallowsX-60, this.gallowsY+38);
+        this.smallerGlyphs.draw(g, 'W', this.gallowsX-90, this.gallowsY+15);
+        this.smallerGlyphs.draw(g, 'L', this.gallowsX-60, this.gallowsY+15);
         g.drawLine(this.gallowsX-100, this.gallowsY+20, this.gallowsX-40, this.gallowsY+20);
         g.drawLine(this.gallowsX-70, this.gallowsY, this.gallowsX-70, this.gallowsY+40);
     }
@@ -3,8 +3,19 @@
  */
 package hangman;
 
+import java.awt.EventQueue;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.net.*;
-import java.util.Scanner;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
 import javax.swing.JFrame;
 
 /**
@@ -14,42 +25,290 @@ import javax.swing.JFrame;
  */
 public class Hangman {
 
+    // Results of every game played in this JVM, and the name the console player's games go under
+    private static final Scoreboard SCOREBOARD = new Scoreboard();
+    private static final String PLAYER = System.getProperty("user.name", "player");
+    // Finished games are appended here so scores survive a restart; null if it couldn't be opened
+    private static GameJournal journal;
+    // Words for console games; a shuffle bag unless -Dhangman.selection says otherwise
+    private static final WordList WORDS = consoleWords();
+    // The window lays out at most 10 letters, and shorter words are too easy
+    private static final int MIN_LENGTH = 5;
+    private static final int MAX_LENGTH = 10;
+    // -Dhangman.mode=evil plays adversarial games: the word keeps changing to dodge guesses
+    private static final boolean EVIL = System.getProperty("hangman.mode", "").equalsIgnoreCase("evil");
+    // Difficulty of console words from -Dhangman.difficulty; null for any
+    private static final WordBuckets.Difficulty DIFFICULTY = consoleDifficulty();
+    // Typed characters from the window and the console, on their way to the game loop
+    private static final InputQueue INPUT = new InputQueue(64);
+    // Typed during a game to ask for a hint instead of guessing
+    private static final char HINT = '?';
+
     /**
      * Main method creates a canvas and frame, then runs games until
      * the user is done playing.
+     * With "--server [port] [maxPlayers]" it hosts network games instead, and with
+     * "--load-test [port] [clients] [games]" it runs a load test against a local server.
+     * "--simulate [games] [solver|frequency|random] [seed]" plays games with a computer player and reports the results.
      * 
      * @param args the command line arguments
      */
     public static void main(String[] args){
+        
+        if (args.length > 0 && args[0].equals("--server")){
+            runServer(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--load-test")){
+            runLoadTest(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--simulate")){
+            runSimulation(args);
+            return;
+        }
      
+        // Load and index the words in the background while the window comes up;
+        // the first game picks them up from here, waiting only for whatever is left.
+        CompletableFuture<WordBuckets> words = WORDS.preload();
+        if (EVIL){
+            words.thenAccept(buckets -> LetterIndex.of(buckets.getDictionary()));
+        }
+        
+        // -Dhangman.watch=true reloads the word list whenever its file changes;
+        // the watcher starts from the loaded list, so it waits for the load in the background too
+        if (Boolean.getBoolean("hangman.watch")){
+            words.thenRun(() -> {
+                try{
+                    WORDS.watch(500);
+                }catch(IOException ex){
+                    System.err.println("Not watching the word list: " + ex.getMessage());
+                }
+            });
+        }
+        
         // Create a canvas
         HangCanvas window = new HangCanvas();        
+        openJournal(window);
         
         // Set up the frame
         JFrame frame = prepareFrame(window);
+        startConsoleInput();
         
         // Run games until quit is selected
         do{
             playGame(window, frame);            
         }while(window.isKeepPlaying());
+        closeJournal();
         System.exit(0);
         
     }
     
     /**
-     * Creates the word list and selects a random word.
+     * Rebuilds the scoreboard from the game journal and opens it for appending.
+     * The file is -Dhangman.journal, by default .hangman-journal in the home
+     * directory. If it can't be used the game still runs, just without saving scores.
      *
-     * @return guessWord - the secret word to be guessed.
+     * @param window - the canvas whose scoreboard shows the restored score.
      */
-    public static String prepareWord(){
+    public static void openJournal(HangCanvas window){
+        Path file = Paths.get(System.getProperty("hangman.journal",
+                System.getProperty("user.home") + File.separator + ".hangman-journal"));
+        try{
+            GameJournal.replay(file, SCOREBOARD);
+            journal = GameJournal.open(file, 100);
+        }catch(IOException ex){
+            System.err.println("Scores won't be saved: " + ex.getMessage());
+        }
+        window.setScore(SCOREBOARD.snapshot(PLAYER));
+        window.publish();
+    }
+
+    /**
+     * Writes out any games still waiting in the journal and closes it.
+     */
+    public static void closeJournal(){
+        if (journal == null){
+            return;
+        }
+        try{
+            journal.close();
+        }catch(IOException ex){
+            System.err.println("Could not save the last scores: " + ex.getMessage());
+        }
+        journal = null;
+    }
+
+    /**
+     * Starts a headless server that hosts games over TCP on localhost.
+     * The server threads keep the JVM running after this returns.
+     *
+     * @param args - "--server", then optional port and maximum number of players.
+     */
+    public static void runServer(String[] args){
+        int port = intArg(args, 1, HangmanServer.DEFAULT_PORT);
+        int maxPlayers = intArg(args, 2, 100000);
+        URL listFile = wordListURL(System.getProperty("hangman.wordlist"));
+        try{
+            HangmanServer server = new HangmanServer(port, Runtime.getRuntime().availableProcessors(),
+                                                     maxPlayers, new WordList(listFile));
+            server.start();
+            System.out.println("Hangman server listening on localhost:" + server.getPort());
+        }catch(IOException ex){
+            System.err.println("Could not start server: " + ex.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs the load generator against a server on localhost and prints throughput and latency.
+     *
+     * @param args - "--load-test", then optional port, number of clients and games per client.
+     */
+    public static void runLoadTest(String[] args){
+        int port = intArg(args, 1, HangmanServer.DEFAULT_PORT);
+        int clients = intArg(args, 2, 1000);
+        int games = intArg(args, 3, 100);
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+        LoadGenerator load = new LoadGenerator(address, clients, games, Runtime.getRuntime().availableProcessors());
+        try{
+            load.run();
+        }catch(IOException|InterruptedException ex){
+            System.err.println("Load test failed: " + ex);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Plays a batch of games with a computer player on all cores and prints
+     * win rates per word length and throughput.
+     *
+     * @param args - "--simulate", then optional number of games, player and seed.
+     */
+    public static void runSimulation(String[] args){
+        int games = intArg(args, 1, 1000000);
+        Simulation.Player player = Simulation.Player.SOLVER;
+        if (args.length > 2){
+            try{
+                player = Simulation.Player.valueOf(args[2].toUpperCase());
+            }catch(IllegalArgumentException ex){
+                System.err.println("Unknown player \"" + args[2] + "\"; use solver, frequency or random.");
+                System.exit(1);
+            }
+        }
+        long seed = System.nanoTime();
+        if (args.length > 3){
+            try{
+                seed = Long.parseLong(args[3]);
+            }catch(NumberFormatException ex){
+                System.err.println("Bad seed \"" + args[3] + "\"; it must be a whole number.");
+                System.exit(1);
+            }
+        }
+        URL listFile = wordListURL(System.getProperty("hangman.wordlist"));
+        Simulation sim = new Simulation(new WordList(listFile).getDictionary(), player);
+        System.out.println("Playing " + games + " games as " + player.name().toLowerCase() + " (seed " + seed + ")");
+        sim.run(games, seed).print();
+    }
+
+    /**
+     * Reads an optional integer command line argument.
+     *
+     * @param args - the command line arguments.
+     * @param i - position of the argument.
+     * @param fallback - value to use if the argument is missing or not a number.
+     * @return value - the argument's value.
+     */
+    private static int intArg(String[] args, int i, int fallback){
+        if (args.length <= i){
+            return fallback;
+        }
+        try{
+            return Integer.parseInt(args[i]);
+        }catch(NumberFormatException ex){
+            return fallback;
+        }
+    }
+    
+    /**
+     * Selects the next word from the console word list. If the list has no
+     * words of the wanted lengths and difficulty, any word will do.
+     *
+     * @return guessWord - the secret word to be guessed, with its index and the dictionary it came from.
+     */
+    public static WordList.Selection prepareWord(){
         // Default list here is a modified version of the English Open Word List 
         // (http://dreamsteep.com/projects/the-english-open-word-list.html)
         // Consists of lower-case words between 5 and 10 characters long
         // Any newline-separated list of words should work, but this program has been designed to handle
         // words no longer than 10 characters.
-        URL listFile = Hangman.class.getResource("/wordlist.txt");
-        WordList dict = new WordList(listFile);
-        return dict.selectWord();
+        try{
+            return WORDS.select(MIN_LENGTH, MAX_LENGTH, DIFFICULTY);
+        }catch(IllegalArgumentException ex){
+            return WORDS.select(1, GuessEngine.MAX_LENGTH, null);
+        }
+    }
+
+    /**
+     * Creates the word list for console games. The list is -Dhangman.wordlist
+     * (a URL or a file name), or the bundled one if that isn't set; it is
+     * loaded through the shared dictionary registry, so it is only read when
+     * the first game needs it. The word selection comes from
+     * -Dhangman.selection ("uniform", "seeded:SEED", "bag" or "bag:SEED").
+     * The default is a shuffle bag, so no word comes up twice in a session.
+     *
+     * @return words - the word list.
+     */
+    private static WordList consoleWords(){
+        WordList words = new WordList(wordListURL(System.getProperty("hangman.wordlist")));
+        try{
+            words.setSelector(WordSelector.parse(System.getProperty("hangman.selection", "bag")));
+        }catch(IllegalArgumentException ex){
+            System.err.println(ex.getMessage() + "; using a shuffle bag.");
+            words.setSelector(WordSelector.shuffleBag(System.nanoTime()));
+        }
+        return words;
+    }
+
+    /**
+     * Turns a word list setting into a URL.
+     *
+     * @param setting - a URL, a file name, or null for the bundled list.
+     * @return path - location of the word list.
+     */
+    private static URL wordListURL(String setting){
+        if (setting == null || setting.isEmpty()){
+            return Hangman.class.getResource("/wordlist.txt");
+        }
+        try{
+            return new URL(setting);
+        }catch(MalformedURLException ex){
+            try{
+                return Paths.get(setting).toUri().toURL();
+            }catch(MalformedURLException|InvalidPathException bad){
+                System.err.println("Can't use word list \"" + setting + "\"; using the bundled one.");
+                return Hangman.class.getResource("/wordlist.txt");
+            }
+        }
+    }
+
+    /**
+     * Reads the difficulty of console words from -Dhangman.difficulty
+     * ("easy", "medium" or "hard"; anything else means any difficulty).
+     *
+     * @return difficulty - the band to pick from, or null for any.
+     */
+    private static WordBuckets.Difficulty consoleDifficulty(){
+        String setting = System.getProperty("hangman.difficulty", "");
+        if (setting.isEmpty() || setting.equalsIgnoreCase("any")){
+            return null;
+        }
+        try{
+            return WordBuckets.Difficulty.valueOf(setting.toUpperCase(Locale.ROOT));
+        }catch(IllegalArgumentException ex){
+            System.err.println("Unknown difficulty \"" + setting + "\"; using any.");
+            return null;
+        }
     }
     
     /**
@@ -63,72 +322,170 @@ public class Hangman {
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         frame.setSize(630, 340);
         frame.getContentPane().add(canvas);
+        // Keys typed in the window go straight to the game loop; this runs on the event thread
+        canvas.setFocusable(true);
+        canvas.addKeyListener(new KeyAdapter(){
+            @Override
+            public void keyTyped(KeyEvent e){
+                char c = e.getKeyChar();
+                if (c != KeyEvent.CHAR_UNDEFINED && !Character.isISOControl(c)){
+                    INPUT.offer(c);
+                }
+            }
+        });
         frame.setVisible(true);
+        canvas.requestFocusInWindow();
         return frame;
     }
-    public static String getInput(Scanner scan){
-        String inputFull = scan.nextLine();
-            // Make sure the player didn't just hit "enter"
-            if (!inputFull.equals("")){
-                // If there is valid input, just grab the first character.
-                return String.valueOf(inputFull.charAt(0));
-            }else{
-                // Otherwise, arbitrary value assigned to help avoid errors.
-                return "01";
+
+    /**
+     * Starts a daemon thread that reads lines typed on the console and posts
+     * the first character of each (GuessEngine.BLANK for an empty line) to the
+     * input queue. Posting goes through the event thread, so the queue keeps
+     * a single producer.
+     */
+    public static void startConsoleInput(){
+        Thread console = new Thread(() -> {
+            BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+            try{
+                String line;
+                while ((line = in.readLine()) != null){
+                    // Make sure the player didn't just hit "enter"
+                    char c = line.isEmpty() ? GuessEngine.BLANK : line.charAt(0);
+                    EventQueue.invokeLater(() -> INPUT.offer(c));
+                }
+            }catch(IOException ex){
+                // No console; the window still takes key presses.
             }
+        }, "hangman-console");
+        console.setDaemon(true);
+        console.start();
+    }
+
+    /**
+     * Waits for the next character typed in the window or on the console.
+     *
+     * @return input - the character, or GuessEngine.BLANK for an empty console line.
+     */
+    public static char getInput(){
+        try{
+            return INPUT.take();
+        }catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+            return GuessEngine.BLANK;
+        }
     }
     
     /**
-     * Main game logic is all here. This method will run a game of Hangman
-     * and then ask if the user wants to play again.
+     * Works out a hint for a game in progress: how many dictionary words fit
+     * what has been revealed and the wrong guesses so far, and which letter
+     * not yet guessed is in the most of them.
+     *
+     * @param engine - the game.
+     * @param dictionary - the words the secret word was picked from.
+     * @return hint - one line of text for the player.
+     */
+    private static String hint(GuessEngine engine, Dictionary dictionary){
+        String word = engine.getWord();
+        long revealed = engine.getRevealed();
+        char[] pattern = new char[word.length()];
+        int i;
+        for (i=0; i<pattern.length; i++){
+            char c = word.charAt(i);
+            if ((revealed & (1L << i)) == 0){
+                pattern[i] = '_';
+            }else{
+                // Characters outside a-z show from the start; let them match anything
+                pattern[i] = c >= 'a' && c <= 'z' ? c : '?';
+            }
+        }
+        String shown = new String(pattern);
+        int excluded = engine.getGuessed() & ~PatternIndex.letters(shown);
+        int[] counts = new int[26];
+        int fit = PatternIndex.of(dictionary).countLetters(shown, excluded, counts);
+        int best = -1;
+        for (i=0; i<26; i++){
+            if ((engine.getGuessed() & (1 << i)) == 0 && counts[i] > 0 && (best < 0 || counts[i] > counts[best])){
+                best = i;
+            }
+        }
+        String hint = "Hint: " + fit + (fit == 1 ? " word fits" : " words fit");
+        if (best >= 0){
+            hint += ", try '" + (char) ('a' + best) + "'";
+        }
+        return hint;
+    }
+
+    /**
+     * Console front end for a game. This method will run a game of Hangman
+     * in the canvas's GameSession and then ask if the user wants to play again.
+     * The rules themselves live in GameSession.
      *
      * @param window - the canvas containing graphics and game state information.
      * @param frame - the frame containing the canvas.
      */
     public static void playGame(HangCanvas window, JFrame frame){
-        // Create scanner for input
-        Scanner scan = new Scanner(System.in);
-        
         // Initial prompt will come up at the same time as the start/rules screen
         System.out.println("Do you want to play a game? ('p' to play, 'q' to quit)");        
 
-        String input = getInput(scan);
-        // If we get anything other than p/P, just exit.
-        if (!input.toLowerCase().equals("p")){
+        char input = getInput();
+        // If we get anything other than p/P, we're done; main will exit.
+        if (Character.toLowerCase(input) != 'p'){
             System.out.println("OK. Goodbye!");
-            System.exit(0);
-        // We got a "p", so start the game
-        }else{
-            // Tell the canvas we're going past the startup screen
-            window.setGameStarted(true);
-            // Give the canvas a random word and its length
-            String guessWord = prepareWord();
-            window.setWord(guessWord);
-            window.setWordLength(guessWord.length());
-            // Set up an array of 0s equal to the word length
-            window.setAllCorrectLetters(new int[guessWord.length()]);
-            // Refresh the display
-            window.repaint();
+            window.setKeepPlaying(false);
+            return;
         }
-        
-            
+        // We got a "p", so start the game with a random word; this also clears the last game's guesses
+        GameSession session = window.getSession();
+        // The word, its index and its dictionary stay together even if the list is being reloaded
+        WordList.Selection pick = prepareWord();
+        Dictionary dictionary = pick.getDictionary();
+        int wordIndex = pick.getIndex();
+        if (EVIL && !(session.getEngine() instanceof AdversarialEngine
+                && ((AdversarialEngine) session.getEngine()).getDictionary() == dictionary)){
+            // First evil game, or the word list has been reloaded: play against the current list
+            session = new GameSession(new AdversarialEngine(dictionary, GameSession.MAX_WRONG));
+            window.setSession(session);
+        }
+        session.start(pick.getWord());
+        // Tell the canvas we're going past the startup screen
+        window.setGameStarted(true);
+        // Refresh the display
+        window.publish();
 
         // Main game logic starts here
-        // Loop the letter-guessing part until player guesses wrong too many times (or wins, which will break out).
-        while(window.failCount < window.getMAX_WRONG()){
+        // Loop the letter-guessing part until the session says the game is over.
+        while(!session.isOver()){
             // Prompt for and get input of (hopefully) a letter
-            System.out.println("Pick a letter (a-z):");
-            input = getInput(scan);
-            // If the letter entered is not in the secret word...
-            if (!window.getWord().contains(input)){
-                // "01" is the value returned by getInput if the user just hit "enter" and gave us an empty string.
-                if(!input.equals("01")){
-                    // If the guess was wrong and not empty, put it in the wrongGuesses array for display
-                    window.setWrongGuess(window.failCount, input);
+            System.out.println("Pick a letter (a-z), or ? for a hint:");
+            // An empty console line comes through as BLANK.
+            // That still counts as a wrong guess, but there's nothing to display for it.
+            char letter = getInput();
+            if (letter == HINT){
+                String hint = hint(session.getEngine(), dictionary);
+                System.out.println(hint);
+                window.setHint(hint);
+                window.publish();
+                continue;
+            }
+            // A hint is only good until the next guess
+            window.setHint("");
+            int result = session.guess(letter);
+            // Score a finished game before the frame so the scoreboard shows it
+            if (result == GameSession.WIN || result == GameSession.LOSS){
+                SCOREBOARD.record(PLAYER, session.getWord().length(), result == GameSession.WIN);
+                window.setScore(SCOREBOARD.snapshot(PLAYER));
+                if (session.getEngine() instanceof AdversarialEngine){
+                    // The word played is the one the engine was left with, not the one it started from
+                    wordIndex = ((AdversarialEngine) session.getEngine()).getWordIndex();
+                }
+                if (journal != null && wordIndex >= 0){
+                    journal.append(session, wordIndex, PLAYER);
                 }
-                // Guess was wrong, so increment the fail counter.
-                window.failCount++;
-           
+            }
+            // One frame per guess; the canvas works out which parts changed
+            window.publish();
+            if (result == GameSession.MISS || result == GameSession.LOSS){
                 // Array of strings to be printed at each wrong guess
                 String[] nopes = {"Nope! Here's your head! ",
                                   "Nope! Here's your body! ",
@@ -137,62 +494,25 @@ public class Hangman {
                                   "Nope! Here's your leg! One more chance! ",
                                   "Last leg! Game over! "};
                 
-                // Repaint the window (HangCanvas will handle which parts to draw)
-                window.repaint();
                 // Print the appropriate string
-                System.out.print(nopes[window.failCount-1]);
-                // If we get to 6 failed guesses, that's a loss. Show the word and add a loss.
-                if(window.failCount == 6){
-                    window.addLoss();
-                }
+                System.out.print(nopes[session.getEngine().getWrongCount()-1]);
 
             }else{
                 // If we got here, the entered letter is in the word!
-                int i;
-                // Only want to print a message for the correctly guessed letter once,
-                // regardless how often it appears in the word.
-                boolean alreadyPrinted = false;
-                // Find the letter every time it appears
-                for (i=0; i<window.getWord().length(); i++){
-                    String checkLetter = String.valueOf(window.getWord().charAt(i));
-                    if (input.equals(checkLetter)){
-                        // Set the corresponding position in the correctLetters array to 1
-                        // That position in the word can now be drawn
-                        window.setCorrectLetter(i);
-                        // Check if we printed a message about this letter already
-                        if(!alreadyPrinted){
-                            System.out.println("Correctly guessed \"" + checkLetter + "\"! ");
-                            alreadyPrinted = true;
-                        }
-                        window.repaint();
-                    }                    
-                }
-                // Now assume the player won for a second...
-                boolean didWin = true;
-                int[] correctLetters = window.getAllCorrectLetters();
-                // ... then check all the letters to see if they've been correctly guessed
-                for (i=0; i<correctLetters.length; i++){
-                    if (correctLetters[i]==0){
-                        // If we found something that has not been correctly guessed, the player didn't win after all.
-                        didWin = false;
-                        break;
-                    }
-                }
-                // If we made it here with everything correctly guessed, the player has won!
-                if (didWin){
+                System.out.println("Correctly guessed \"" + letter + "\"! ");
+                // If every position is now showing, the player has won!
+                if (result == GameSession.WIN){
                     System.out.print("You win! ");
-                    window.addWin();
-                    break;
                 }
             }
         }
         // GG. Rematch?
         System.out.println("Play again? (y/n)");
-        input = getInput(scan);
+        input = getInput();
         // If not "y", we're done here.
-        if (!input.toLowerCase().equals("y")){
+        if (Character.toLowerCase(input) != 'y'){
             System.out.println("OK. Goodbye!");
-            System.exit(0);
+            window.setKeepPlaying(false);
         }else{
             // Got a "y"? Reset the game state and go again.
             window.resetState();
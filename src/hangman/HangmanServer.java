@@ -0,0 +1,526 @@
+/*
+ * Network front end: hosts many games of Hangman over a simple line protocol.
+ */
+package hangman;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Non-blocking TCP server. One acceptor thread hands each new connection to
+ * one of several worker threads, each running its own Selector loop. A
+ * connection stays on its worker for life, so its game is only ever touched
+ * by one thread and there are no locks on the request path; the only shared
+ * structures are the lock-free SessionPool and the immutable dictionary.
+ *
+ * <p>Protocol: one command per line, one response line per command.</p>
+ * <pre>
+ *   play        OK &lt;length&gt; &lt;pattern&gt;
+ *   guess x     HIT|MISS &lt;pattern&gt; &lt;wrong&gt;/&lt;max&gt;, or WIN|LOSS &lt;word&gt;
+ *   status      STATUS IDLE|PLAYING|WON|LOST &lt;pattern&gt; &lt;wrong&gt;/&lt;max&gt; &lt;wrong letters&gt;
+ *   quit        BYE, then the connection is closed
+ * </pre>
+ * Anything else gets a line starting with ERR.
+ */
+public final class HangmanServer implements AutoCloseable {
+
+    /** Port used when none is given. */
+    public static final int DEFAULT_PORT = 7777;
+
+    // Longest command line accepted; longer lines are answered with ERR and skipped.
+    private static final int MAX_LINE = 128;
+    // Room always left in the output buffer before another command is handled.
+    private static final int MAX_RESPONSE = 64 + 3 * GuessEngine.MAX_LENGTH * 2;
+    // Random picks tried before searching the list in order for a word the game can use
+    private static final int PICK_TRIES = 32;
+
+    private final ServerSocketChannel server;
+    private final Worker[] workers;
+    private final SessionPool pool;
+    private final WordList words;
+    private final Thread acceptor;
+    private volatile boolean running = true;
+
+    /**
+     * Constructor that binds the server to a port on the loopback interface.
+     * Call start() to begin accepting players.
+     *
+     * @param port - TCP port, or 0 for any free port.
+     * @param workerCount - number of selector threads.
+     * @param maxPlayers - maximum number of simultaneous connections.
+     * @param words - word list to pick secret words from.
+     * @throws IOException if the port can't be bound.
+     */
+    public HangmanServer(int port, int workerCount, int maxPlayers, WordList words) throws IOException {
+        this.words = words;
+        this.pool = new SessionPool(maxPlayers);
+        this.server = ServerSocketChannel.open();
+        this.server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        this.server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 4096);
+        this.workers = new Worker[workerCount];
+        int i;
+        for (i=0; i<workerCount; i++){
+            this.workers[i] = new Worker(i);
+        }
+        this.acceptor = new Thread(this::acceptLoop, "hangman-acceptor");
+    }
+
+    /**
+     * Start the acceptor and worker threads.
+     */
+    public void start() {
+        for (Worker worker : this.workers){
+            worker.thread.start();
+        }
+        this.acceptor.start();
+    }
+
+    /**
+     * @return port - the port the server is listening on.
+     * @throws IOException if the server socket has been closed.
+     */
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) this.server.getLocalAddress()).getPort();
+    }
+
+    /**
+     * @return pool - the sessions of connected players.
+     */
+    public SessionPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Stop accepting players and close every connection.
+     */
+    @Override
+    public void close() {
+        this.running = false;
+        try {
+            this.server.close();
+        } catch (IOException ex) {
+            // Closing anyway.
+        }
+        for (Worker worker : this.workers){
+            worker.selector.wakeup();
+        }
+    }
+
+    private void acceptLoop() {
+        int next = 0;
+        while (this.running){
+            try {
+                SocketChannel channel = this.server.accept();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                this.workers[next].hand(channel);
+                next = (next + 1) % this.workers.length;
+            } catch (ClosedChannelException ex) {
+                return;
+            } catch (IOException ex) {
+                if (this.running){
+                    System.err.println("Accept failed: " + ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * State of one connected player.
+     */
+    private static final class Connection {
+        final SocketChannel channel;
+        final GameSession session;
+        final ByteBuffer in = ByteBuffer.allocate(MAX_LINE * 4);
+        final ByteBuffer out = ByteBuffer.allocate(MAX_RESPONSE * 8);
+        // Skipping the rest of a line that was too long
+        boolean discarding;
+        boolean closing;
+        boolean released;
+
+        Connection(SocketChannel channel, GameSession session) {
+            this.channel = channel;
+            this.session = session;
+        }
+    }
+
+    /**
+     * A selector thread and the connections it owns.
+     */
+    private final class Worker implements Runnable {
+        final Selector selector;
+        final Thread thread;
+        final Queue<SocketChannel> incoming = new ConcurrentLinkedQueue<>();
+
+        Worker(int n) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "hangman-worker-" + n);
+            this.thread.setDaemon(true);
+        }
+
+        void hand(SocketChannel channel) {
+            this.incoming.add(channel);
+            this.selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running){
+                    this.selector.select();
+                    registerIncoming();
+                    Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+                    while (keys.hasNext()){
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        Connection conn = (Connection) key.attachment();
+                        try {
+                            if (key.isReadable()){
+                                read(key, conn);
+                            }
+                            if (key.isValid() && key.isWritable()){
+                                flush(key, conn);
+                            }
+                        } catch (IOException ex) {
+                            drop(key, conn);
+                        } catch (RuntimeException ex) {
+                            // A bug must not take the worker's other connections with it
+                            System.err.println("Dropping connection after error: " + ex);
+                            drop(key, conn);
+                        }
+                    }
+                }
+            } catch (IOException|ClosedSelectorException ex) {
+                if (running){
+                    System.err.println("Worker stopped: " + ex);
+                }
+            } finally {
+                for (SelectionKey key : this.selector.keys()){
+                    drop(key, (Connection) key.attachment());
+                }
+                try {
+                    this.selector.close();
+                } catch (IOException ex) {
+                    // Shutting down anyway.
+                }
+            }
+        }
+
+        // Take on new connections; a failure only loses the connection it happened on.
+        private void registerIncoming() {
+            SocketChannel channel;
+            while ((channel = this.incoming.poll()) != null){
+                GameSession session = pool.acquire();
+                try {
+                    if (session == null){
+                        channel.write(ByteBuffer.wrap("ERR server full\n".getBytes(StandardCharsets.US_ASCII)));
+                        channel.close();
+                        continue;
+                    }
+                    channel.register(this.selector, SelectionKey.OP_READ, new Connection(channel, session));
+                } catch (IOException|RuntimeException ex) {
+                    try {
+                        channel.close();
+                    } catch (IOException closing) {
+                        // Already gone.
+                    }
+                    if (session != null){
+                        pool.release(session);
+                    }
+                }
+            }
+        }
+
+        private void read(SelectionKey key, Connection conn) throws IOException {
+            if (conn.channel.read(conn.in) < 0){
+                drop(key, conn);
+                return;
+            }
+            handleLines(conn);
+            flush(key, conn);
+        }
+
+        private void flush(SelectionKey key, Connection conn) throws IOException {
+            conn.out.flip();
+            conn.channel.write(conn.out);
+            conn.out.compact();
+            if (conn.out.position() > 0){
+                key.interestOps(SelectionKey.OP_WRITE);
+                return;
+            }
+            if (conn.closing){
+                drop(key, conn);
+                return;
+            }
+            key.interestOps(SelectionKey.OP_READ);
+            // Commands held back while the output buffer was full can go now, as can a line that is too long.
+            if (conn.in.position() > 0 && (hasLine(conn.in) || !conn.in.hasRemaining())){
+                handleLines(conn);
+                if (conn.out.position() > 0){
+                    flush(key, conn);
+                }
+            }
+        }
+
+        private void drop(SelectionKey key, Connection conn) {
+            key.cancel();
+            try {
+                conn.channel.close();
+            } catch (IOException ex) {
+                // Already gone.
+            }
+            if (!conn.released){
+                conn.released = true;
+                pool.release(conn.session);
+            }
+        }
+    }
+
+    private static boolean hasLine(ByteBuffer in) {
+        int i;
+        for (i=0; i<in.position(); i++){
+            if (in.get(i) == '\n'){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Answer every complete command line in the input buffer, as long as there
+     * is room in the output buffer.
+     *
+     * @param conn - the connection.
+     */
+    private void handleLines(Connection conn) {
+        ByteBuffer in = conn.in;
+        int start = 0;
+        int i = 0;
+        while (i < in.position() && !conn.closing && conn.out.remaining() >= MAX_RESPONSE){
+            if (in.get(i) == '\n'){
+                if (conn.discarding){
+                    conn.discarding = false;
+                }else{
+                    int mark = conn.out.position();
+                    try {
+                        handleCommand(conn, in, start, i);
+                    } catch (RuntimeException ex) {
+                        // Take back any half-written response and answer this command alone with ERR
+                        conn.out.position(mark);
+                        put(conn.out, "ERR internal error\n");
+                    }
+                }
+                start = i + 1;
+            }
+            i++;
+        }
+        if (start == 0 && in.position() == in.limit() && !hasLine(in)){
+            // A full buffer with no newline: the line is too long. Answer it once, when there is room.
+            if (!conn.discarding){
+                if (conn.out.remaining() < MAX_RESPONSE){
+                    return;
+                }
+                conn.discarding = true;
+                put(conn.out, "ERR line too long\n");
+            }
+            in.clear();
+            return;
+        }
+        in.limit(in.position());
+        in.position(start);
+        in.compact();
+    }
+
+    private void handleCommand(Connection conn, ByteBuffer line, int from, int to) {
+        while (to > from && (line.get(to - 1) == '\r' || line.get(to - 1) == ' ')){
+            to--;
+        }
+        while (from < to && line.get(from) == ' '){
+            from++;
+        }
+        ByteBuffer out = conn.out;
+        GameSession session = conn.session;
+        if (matches(line, from, to, "play")){
+            String word = pickWord();
+            if (word == null){
+                put(out, "ERR no playable words\n");
+                return;
+            }
+            session.start(word);
+            put(out, "OK ");
+            putInt(out, session.getEngine().getLength());
+            out.put((byte) ' ');
+            putPattern(out, session.getEngine(), false);
+            out.put((byte) '\n');
+        }else if (to - from == 7 && matches(line, from, from + 6, "guess ")){
+            int result = session.guess((char) (line.get(from + 6) | 0x20));
+            switch (result){
+                case GameSession.NOT_PLAYING:
+                    put(out, "ERR no game, send play\n");
+                    return;
+                case GameSession.WIN:
+                    put(out, "WIN ");
+                    putWord(out, session.getWord());
+                    out.put((byte) '\n');
+                    return;
+                case GameSession.LOSS:
+                    put(out, "LOSS ");
+                    putWord(out, session.getWord());
+                    out.put((byte) '\n');
+                    return;
+                default:
+                    put(out, result == GameSession.HIT ? "HIT " : "MISS ");
+                    putPattern(out, session.getEngine(), false);
+                    out.put((byte) ' ');
+                    putProgress(out, session.getEngine());
+                    out.put((byte) '\n');
+            }
+        }else if (matches(line, from, to, "status")){
+            put(out, "STATUS ");
+            switch (session.getState()){
+                case GameSession.PLAYING: put(out, "PLAYING "); break;
+                case GameSession.WON: put(out, "WON "); break;
+                case GameSession.LOST: put(out, "LOST "); break;
+                default: put(out, "IDLE "); break;
+            }
+            GuessEngine engine = session.getEngine();
+            putPattern(out, engine, session.isOver());
+            out.put((byte) ' ');
+            putProgress(out, engine);
+            out.put((byte) ' ');
+            int i;
+            for (i=0; i<Math.min(engine.getWrongCount(), engine.getMaxWrong()); i++){
+                char c = engine.getWrongLetter(i);
+                out.put((byte) (c >= '!' && c < 127 ? c : '_'));
+            }
+            out.put((byte) '\n');
+        }else if (matches(line, from, to, "quit")){
+            put(out, "BYE\n");
+            conn.closing = true;
+        }else{
+            put(out, "ERR unknown command\n");
+        }
+    }
+
+    /**
+     * Pick a word the game can be played with over the protocol: at most
+     * GuessEngine.MAX_LENGTH characters, all a-z. A few picks are made with
+     * the word list's selector; if none of those will do (a list with few
+     * such words), the list is searched in order from the last pick.
+     *
+     * @return word - the secret word, or null if the list has none that can be played.
+     */
+    private String pickWord() {
+        WordBuckets.Range range = this.words.getBuckets().range(1, GuessEngine.MAX_LENGTH, null);
+        int size = range.size();
+        if (size == 0){
+            return null;
+        }
+        int pick = 0;
+        int i;
+        for (i=0; i<PICK_TRIES; i++){
+            pick = this.words.getSelector().next(range);
+            if (isPlayable(range, pick)){
+                return range.getWord(pick);
+            }
+        }
+        for (i=1; i<size; i++){
+            int n = (pick + i) % size;
+            if (isPlayable(range, n)){
+                return range.getWord(n);
+            }
+        }
+        return null;
+    }
+
+    private static boolean isPlayable(Dictionary dictionary, int index) {
+        int length = dictionary.getLength(index);
+        int i;
+        for (i=0; i<length; i++){
+            char c = dictionary.getLetter(index, i);
+            if (c < 'a' || c > 'z'){
+                return false;
+            }
+        }
+        return length > 0;
+    }
+
+    private static boolean matches(ByteBuffer line, int from, int to, String command) {
+        if (to - from != command.length()){
+            return false;
+        }
+        int i;
+        for (i=0; i<command.length(); i++){
+            if ((line.get(from + i) | 0x20) != command.charAt(i)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void put(ByteBuffer out, String ascii) {
+        int i;
+        for (i=0; i<ascii.length(); i++){
+            out.put((byte) ascii.charAt(i));
+        }
+    }
+
+    private static void putInt(ByteBuffer out, int value) {
+        if (value >= 10){
+            putInt(out, value / 10);
+        }
+        out.put((byte) ('0' + value % 10));
+    }
+
+    private static void putProgress(ByteBuffer out, GuessEngine engine) {
+        putInt(out, engine.getWrongCount());
+        out.put((byte) '/');
+        putInt(out, engine.getMaxWrong());
+    }
+
+    private static void putPattern(ByteBuffer out, GuessEngine engine, boolean showAll) {
+        String word = engine.getWord();
+        int i;
+        for (i=0; i<word.length(); i++){
+            if (showAll || engine.isRevealed(i)){
+                putChar(out, word.charAt(i));
+            }else{
+                out.put((byte) '_');
+            }
+        }
+    }
+
+    private static void putWord(ByteBuffer out, String word) {
+        int i;
+        for (i=0; i<word.length(); i++){
+            putChar(out, word.charAt(i));
+        }
+    }
+
+    // UTF-8 encode one character of the Basic Multilingual Plane.
+    private static void putChar(ByteBuffer out, char c) {
+        if (c < 0x80){
+            out.put((byte) c);
+        }else if (c < 0x800){
+            out.put((byte) (0xC0 | (c >> 6)));
+            out.put((byte) (0x80 | (c & 0x3F)));
+        }else{
+            out.put((byte) (0xE0 | (c >> 12)));
+            out.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+            out.put((byte) (0x80 | (c & 0x3F)));
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Bounded lock-free queue carrying typed characters from the UI to the game loop.
+ */
+package hangman;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single-producer, single-consumer ring buffer of characters. One thread (the
+ * event dispatch thread) offers, one thread (the game loop) takes; neither
+ * takes a lock. The producer never waits: if the game loop has fallen a whole
+ * buffer behind, the key is dropped. The consumer parks while the queue is
+ * empty and is unparked by the next offer.
+ */
+public final class InputQueue {
+
+    private final char[] items;
+    private final int mask;
+    // Next slot to write; only the producer changes it
+    private final AtomicLong tail = new AtomicLong();
+    // Next slot to read; only the consumer changes it
+    private final AtomicLong head = new AtomicLong();
+    // The consumer, while it is parked waiting for input
+    private volatile Thread waiter;
+
+    /**
+     * Constructor taking the most characters that can wait at once.
+     *
+     * @param capacity - queue size; rounded up to a power of two.
+     */
+    public InputQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.items = new char[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Add a character. Call only from the producer thread.
+     *
+     * @param c - the character.
+     * @return added - false if the queue was full and the character was dropped.
+     */
+    public boolean offer(char c) {
+        long t = this.tail.get();
+        if (t - this.head.get() == this.items.length){
+            return false;
+        }
+        this.items[(int) t & this.mask] = c;
+        // A full volatile write, so the check of waiter below can't move before it.
+        this.tail.set(t + 1);
+        Thread w = this.waiter;
+        if (w != null){
+            LockSupport.unpark(w);
+        }
+        return true;
+    }
+
+    /**
+     * Take the oldest character, if there is one. Call only from the consumer thread.
+     *
+     * @return c - the character, or -1 if the queue is empty.
+     */
+    public int poll() {
+        long h = this.head.get();
+        if (h == this.tail.get()){
+            return -1;
+        }
+        char c = this.items[(int) h & this.mask];
+        this.head.lazySet(h + 1);
+        return c;
+    }
+
+    /**
+     * Take the oldest character, waiting for one if the queue is empty. Call
+     * only from the consumer thread.
+     *
+     * @return c - the character.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public char take() throws InterruptedException {
+        while (true){
+            int c = poll();
+            if (c >= 0){
+                return (char) c;
+            }
+            this.waiter = Thread.currentThread();
+            // Check again now that the producer can see we are waiting.
+            if (this.head.get() == this.tail.get()){
+                LockSupport.park(this);
+            }
+            this.waiter = null;
+            if (Thread.interrupted()){
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    /**
+     * @return capacity - most characters that can wait at once.
+     */
+    public int getCapacity() {
+        return items.length;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Fixed-size histogram of latencies, for percentiles without keeping every sample.
+ */
+package hangman;
+
+/**
+ * Log-linear latency histogram. Values are bucketed by their highest set bit,
+ * and each power of two is split into 16 sub-buckets, so any recorded value is
+ * reported to within about 6%. The bucket array has a fixed size whatever the
+ * values or sample count. Not thread-safe: give each thread its own histogram
+ * and merge them.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long total;
+    private long sum;
+    private long max;
+
+    /**
+     * Record one value.
+     *
+     * @param value - the latency (any unit, usually nanoseconds); negative values count as 0.
+     */
+    public void record(long value) {
+        if (value < 0){
+            value = 0;
+        }
+        this.counts[bucketOf(value)]++;
+        this.total++;
+        this.sum += value;
+        if (value > this.max){
+            this.max = value;
+        }
+    }
+
+    /**
+     * Add every sample of another histogram to this one.
+     *
+     * @param other - histogram to merge in.
+     */
+    public void merge(LatencyHistogram other) {
+        int i;
+        for (i=0; i<BUCKETS; i++){
+            this.counts[i] += other.counts[i];
+        }
+        this.total += other.total;
+        this.sum += other.sum;
+        this.max = Math.max(this.max, other.max);
+    }
+
+    /**
+     * Add samples straight into a bucket, counting each at the bucket's upper edge.
+     *
+     * @param bucket - index into the bucket array.
+     * @param n - number of samples.
+     */
+    void add(int bucket, long n) {
+        long value = upperEdge(bucket);
+        this.counts[bucket] += n;
+        this.total += n;
+        this.sum += value * n;
+        if (value > this.max){
+            this.max = value;
+        }
+    }
+
+    /**
+     * Get the value below which a fraction of the samples fall.
+     *
+     * @param fraction - from 0 to 1, e.g. 0.99 for the 99th percentile.
+     * @return value - upper edge of the bucket holding that percentile, or 0 if empty.
+     */
+    public long percentile(double fraction) {
+        if (this.total == 0){
+            return 0;
+        }
+        long rank = (long) Math.ceil(fraction * this.total);
+        if (rank < 1){
+            rank = 1;
+        }
+        long seen = 0;
+        int i;
+        for (i=0; i<BUCKETS; i++){
+            seen += this.counts[i];
+            if (seen >= rank){
+                return Math.min(upperEdge(i), this.max);
+            }
+        }
+        return this.max;
+    }
+
+    /**
+     * @return count - number of samples recorded.
+     */
+    public long getCount() {
+        return total;
+    }
+
+    /**
+     * @return mean - average sample, or 0 if empty.
+     */
+    public double getMean() {
+        return total == 0 ? 0 : (double) sum / total;
+    }
+
+    /**
+     * @return max - largest sample recorded.
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Find the bucket a value belongs in.
+     *
+     * @param value - non-negative value.
+     * @return bucket - index into the bucket array.
+     */
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS){
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Find the largest value that lands in a bucket.
+     *
+     * @param bucket - index into the bucket array.
+     * @return value - top of the bucket's range.
+     */
+    static long upperEdge(int bucket) {
+        if (bucket < SUB_BUCKETS){
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long base = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return base + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Bitmap index of a dictionary by word length, letter position and letter.
+ */
+package hangman;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Inverted index over a Dictionary. Words are grouped by length; within a
+ * length group every word has a number, and for each position and each letter
+ * a-z there is a bitmap of the words with that letter there. A second set of
+ * bitmaps says which words contain each letter anywhere. Questions like "which
+ * words have an 'e' only in position 3" are then a few ANDs over long arrays
+ * instead of a scan over Strings.
+ */
+public final class LetterIndex {
+
+    // One index per dictionary, built on first use. The index holds no reference
+    // back to its dictionary, so an entry goes away when the dictionary does.
+    private static final Map<Dictionary, LetterIndex> INDEXES = new WeakHashMap<>();
+
+    // groups[len] is null if there are no words of that length
+    private final Group[] groups;
+
+    /**
+     * Words of one length and their bitmaps.
+     */
+    public static final class Group {
+        final int length;
+        // Dictionary index of each word in the group
+        final int[] words;
+        // Longs per bitmap
+        final int span;
+        // at[pos * 26 + letter] has a bit set for each word with that letter at pos
+        final long[][] at;
+        // contains[letter] has a bit set for each word with that letter anywhere
+        final long[][] contains;
+
+        Group(int length, int[] words) {
+            this.length = length;
+            this.words = words;
+            this.span = (words.length + 63) >>> 6;
+            this.at = new long[length * 26][];
+            this.contains = new long[26][];
+        }
+
+        /**
+         * @return length - length of every word in the group.
+         */
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * @return size - number of words in the group.
+         */
+        public int size() {
+            return words.length;
+        }
+
+        /**
+         * Get the dictionary index of a word in the group.
+         *
+         * @param n - the word's number within the group.
+         * @return index - the word's position in the dictionary.
+         */
+        public int getWordIndex(int n) {
+            return words[n];
+        }
+
+        /**
+         * Get the bitmap of words with a letter at a position. Callers must not change it.
+         *
+         * @param pos - letter position.
+         * @param letter - 0 for 'a' to 25 for 'z'.
+         * @return bitmap - one bit per word in the group.
+         */
+        public long[] at(int pos, int letter) {
+            return at[pos * 26 + letter];
+        }
+
+        /**
+         * Get the bitmap of words that contain a letter. Callers must not change it.
+         *
+         * @param letter - 0 for 'a' to 25 for 'z'.
+         * @return bitmap - one bit per word in the group.
+         */
+        public long[] contains(int letter) {
+            return contains[letter];
+        }
+    }
+
+    private LetterIndex(Group[] groups) {
+        this.groups = groups;
+    }
+
+    /**
+     * Get the index for a dictionary, building it the first time it is asked for.
+     *
+     * @param dictionary - the words to index.
+     * @return index - the shared index for that dictionary.
+     */
+    public static LetterIndex of(Dictionary dictionary) {
+        synchronized (INDEXES){
+            LetterIndex index = INDEXES.get(dictionary);
+            if (index == null){
+                index = build(dictionary);
+                INDEXES.put(dictionary, index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Build a new index over a dictionary.
+     *
+     * @param dictionary - the words to index.
+     * @return index - the new index.
+     */
+    public static LetterIndex build(Dictionary dictionary) {
+        int size = dictionary.size();
+        int[] lengths = new int[size];
+        int maxLength = 0;
+        int i;
+        for (i=0; i<size; i++){
+            lengths[i] = Math.min(dictionary.getLength(i), GuessEngine.MAX_LENGTH + 1);
+            maxLength = Math.max(maxLength, lengths[i]);
+        }
+        int[] counts = new int[maxLength + 1];
+        for (i=0; i<size; i++){
+            counts[lengths[i]]++;
+        }
+        Group[] groups = new Group[Math.min(maxLength, GuessEngine.MAX_LENGTH) + 1];
+        int len;
+        for (len=1; len<groups.length; len++){
+            if (counts[len] > 0){
+                groups[len] = new Group(len, new int[counts[len]]);
+                counts[len] = 0;
+            }
+        }
+        for (i=0; i<size; i++){
+            if (lengths[i] > 0 && lengths[i] < groups.length){
+                groups[lengths[i]].words[counts[lengths[i]]++] = i;
+            }
+        }
+        for (Group group : groups){
+            if (group != null){
+                fill(dictionary, group);
+            }
+        }
+        return new LetterIndex(groups);
+    }
+
+    private static void fill(Dictionary dictionary, Group group) {
+        int n;
+        for (n=0; n<group.at.length; n++){
+            group.at[n] = new long[group.span];
+        }
+        for (n=0; n<26; n++){
+            group.contains[n] = new long[group.span];
+        }
+        // Packed words can be read a letter at a time; anything else is cheaper to decode once.
+        boolean packed = dictionary instanceof PackedWordStore;
+        for (n=0; n<group.words.length; n++){
+            int word = group.words[n];
+            String text = packed ? null : dictionary.getWord(word);
+            long bit = 1L << n;
+            int pos;
+            for (pos=0; pos<group.length; pos++){
+                int letter = (packed ? dictionary.getLetter(word, pos) : text.charAt(pos)) - 'a';
+                if (letter >= 0 && letter < 26){
+                    group.at[pos * 26 + letter][n >>> 6] |= bit;
+                    group.contains[letter][n >>> 6] |= bit;
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the words of one length.
+     *
+     * @param length - word length.
+     * @return group - the words of that length, or null if there are none.
+     */
+    public Group group(int length) {
+        return length > 0 && length < groups.length ? groups[length] : null;
+    }
+
+    /**
+     * @return maxLength - longest word length in the index.
+     */
+    public int getMaxLength() {
+        return groups.length - 1;
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Local load generator for HangmanServer: many simulated players over TCP.
+ */
+package hangman;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+/**
+ * Drives a HangmanServer with a number of connections, each playing a fixed
+ * number of games with one request in flight at a time. Connections are
+ * spread over a few selector threads. Every request/response round trip is
+ * timed, and the run ends with throughput and latency percentiles.
+ */
+public final class LoadGenerator {
+
+    // Guess order: roughly how common each letter is in the bundled word list.
+    private static final String LETTERS = "esiarntolcdupmghbyfvkwzxqj";
+
+    private final InetSocketAddress address;
+    private final int clients;
+    private final int gamesPerClient;
+    private final int threads;
+
+    /**
+     * Constructor taking the server address and the size of the run.
+     *
+     * @param address - server to connect to.
+     * @param clients - number of simultaneous connections.
+     * @param gamesPerClient - games each connection plays before quitting.
+     * @param threads - number of selector threads driving the connections.
+     */
+    public LoadGenerator(InetSocketAddress address, int clients, int gamesPerClient, int threads) {
+        this.address = address;
+        this.clients = clients;
+        this.gamesPerClient = gamesPerClient;
+        this.threads = Math.max(1, Math.min(threads, clients));
+    }
+
+    /**
+     * Run the load test and print a summary.
+     *
+     * @return latencies - round-trip times of every request, in nanoseconds.
+     * @throws IOException if connecting fails.
+     * @throws InterruptedException if interrupted while waiting for the drivers.
+     */
+    public LatencyHistogram run() throws IOException, InterruptedException {
+        Driver[] drivers = new Driver[this.threads];
+        Thread[] running = new Thread[this.threads];
+        int i;
+        for (i=0; i<this.threads; i++){
+            int count = this.clients / this.threads + (i < this.clients % this.threads ? 1 : 0);
+            drivers[i] = new Driver(count);
+        }
+        long start = System.nanoTime();
+        for (i=0; i<this.threads; i++){
+            running[i] = new Thread(drivers[i], "hangman-load-" + i);
+            running[i].start();
+        }
+        LatencyHistogram total = new LatencyHistogram();
+        long games = 0;
+        long errors = 0;
+        IOException failure = null;
+        // Wait for every driver before giving up on a failed one, so none is left running
+        for (i=0; i<this.threads; i++){
+            running[i].join();
+            total.merge(drivers[i].latency);
+            games += drivers[i].games;
+            errors += drivers[i].errors;
+            if (drivers[i].failure != null){
+                if (failure == null){
+                    failure = drivers[i].failure;
+                }else{
+                    failure.addSuppressed(drivers[i].failure);
+                }
+            }
+        }
+        if (failure != null){
+            throw failure;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d clients, %d games, %d requests in %.2f s (%d errors)%n",
+                this.clients, games, total.getCount(), seconds, errors);
+        System.out.printf("Throughput: %.0f requests/s, %.0f games/s%n",
+                total.getCount() / seconds, games / seconds);
+        System.out.printf("Latency: mean %.1f us, p50 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us%n",
+                total.getMean() / 1e3, total.percentile(0.50) / 1e3, total.percentile(0.99) / 1e3,
+                total.percentile(0.999) / 1e3, total.getMax() / 1e3);
+        return total;
+    }
+
+    /**
+     * One simulated player.
+     */
+    private static final class Client {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(512);
+        final ByteBuffer out = ByteBuffer.allocate(64);
+        int gamesLeft;
+        int nextLetter;
+        long sentAt;
+
+        Client(SocketChannel channel, int games) {
+            this.channel = channel;
+            this.gamesLeft = games;
+        }
+    }
+
+    /**
+     * A selector thread and the players it drives.
+     */
+    private final class Driver implements Runnable {
+        final int count;
+        final LatencyHistogram latency = new LatencyHistogram();
+        long games;
+        long errors;
+        IOException failure;
+
+        Driver(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public void run() {
+            try (Selector selector = Selector.open()) {
+                int i;
+                for (i=0; i<this.count; i++){
+                    SocketChannel channel = SocketChannel.open(address);
+                    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                    channel.configureBlocking(false);
+                    Client client = new Client(channel, gamesPerClient);
+                    channel.register(selector, SelectionKey.OP_READ, client);
+                    send(client, "play");
+                }
+                int open = this.count;
+                while (open > 0){
+                    selector.select();
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()){
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        Client client = (Client) key.attachment();
+                        if (!read(client)){
+                            key.cancel();
+                            client.channel.close();
+                            open--;
+                        }
+                    }
+                }
+            } catch (IOException ex) {
+                this.failure = ex;
+            }
+        }
+
+        /**
+         * Handle whatever the server has sent, replying to each complete line.
+         *
+         * @return keepOpen - false once the connection is finished.
+         */
+        private boolean read(Client client) throws IOException {
+            if (client.channel.read(client.in) < 0){
+                return false;
+            }
+            int start = 0;
+            int i;
+            for (i=0; i<client.in.position(); i++){
+                if (client.in.get(i) != '\n'){
+                    continue;
+                }
+                long now = System.nanoTime();
+                this.latency.record(now - client.sentAt);
+                byte kind = client.in.get(start);
+                start = i + 1;
+                switch (kind){
+                    case 'O':
+                    case 'H':
+                    case 'M':
+                        if (client.nextLetter == LETTERS.length()){
+                            client.nextLetter = 0;
+                        }
+                        send(client, "guess ", LETTERS.charAt(client.nextLetter++));
+                        break;
+                    case 'W':
+                    case 'L':
+                        this.games++;
+                        client.nextLetter = 0;
+                        if (--client.gamesLeft > 0){
+                            send(client, "play");
+                        }else{
+                            send(client, "quit");
+                        }
+                        break;
+                    case 'B':
+                        return false;
+                    default:
+                        this.errors++;
+                        return false;
+                }
+            }
+            client.in.limit(client.in.position());
+            client.in.position(start);
+            client.in.compact();
+            return true;
+        }
+
+        private void send(Client client, String command) throws IOException {
+            send(client, command, '\n');
+        }
+
+        private void send(Client client, String command, char last) throws IOException {
+            ByteBuffer out = client.out;
+            out.clear();
+            int i;
+            for (i=0; i<command.length(); i++){
+                out.put((byte) command.charAt(i));
+            }
+            out.put((byte) last);
+            if (last != '\n'){
+                out.put((byte) '\n');
+            }
+            out.flip();
+            client.sentAt = System.nanoTime();
+            // Commands are tiny, so this only loops if the socket buffer is full.
+            while (out.hasRemaining()){
+                client.channel.write(out);
+            }
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Dictionary that keeps the word list as raw bytes (memory-mapped when it is a local file)
+ * and only remembers where each line starts.
+ */
+package hangman;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Offset-indexed Dictionary. The heap cost is one int per word; a word is only
+ * decoded into a String when it is asked for.
+ */
+public final class MappedDictionary implements Dictionary {
+
+    // Each indexing task scans at least this many bytes, so small lists stay on one thread.
+    private static final int MIN_CHUNK = 1 << 18;
+
+    private final ByteBuffer bytes;
+    // offsets[i] is where word i starts; offsets[size] is one past the end of the last word's line.
+    private final int[] offsets;
+
+    private MappedDictionary(ByteBuffer bytes, int[] offsets) {
+        this.bytes = bytes;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Map (or, for non-file URLs such as jar resources, read) a newline-separated
+     * word list and index the start of every line.
+     *
+     * @param path - location of the word list.
+     * @return dictionary - the indexed word list.
+     * @throws IOException if the list can't be read or is 2GB or larger.
+     * @throws NullPointerException if path is null.
+     */
+    public static MappedDictionary load(URL path) throws IOException, NullPointerException {
+        ByteBuffer buf;
+        if ("file".equals(path.getProtocol())){
+            buf = map(toPath(path));
+        }else{
+            try (InputStream in = path.openStream()) {
+                buf = ByteBuffer.wrap(readFully(in)).asReadOnlyBuffer();
+            }
+        }
+        return new MappedDictionary(buf, index(buf));
+    }
+
+    /**
+     * Memory-map a whole file read-only.
+     *
+     * @param file - the file to map.
+     * @return buf - mapped contents.
+     * @throws IOException if the file can't be mapped.
+     */
+    static ByteBuffer map(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size >= Integer.MAX_VALUE){
+                throw new IOException("Word list too large to map: " + file + " (" + size + " bytes)");
+            }
+            if (Metrics.ENABLED){
+                Metrics.DICTIONARY_BYTES.add(size);
+            }
+            // The mapping stays valid after the channel is closed.
+            return ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    /**
+     * Turn a file: URL into a Path.
+     *
+     * @param path - file URL.
+     * @return file - matching path.
+     * @throws IOException if the URL is not a valid file URI.
+     */
+    static Path toPath(URL path) throws IOException {
+        try {
+            return Paths.get(path.toURI());
+        } catch (URISyntaxException|IllegalArgumentException ex) {
+            throw new IOException("Not a file URL: " + path, ex);
+        }
+    }
+
+    /**
+     * Read a stream to the end.
+     *
+     * @param in - stream to read.
+     * @return data - everything in the stream.
+     * @throws IOException if reading fails.
+     */
+    static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 16);
+        byte[] chunk = new byte[1 << 16];
+        int n;
+        while ((n = in.read(chunk)) != -1){
+            out.write(chunk, 0, n);
+        }
+        if (Metrics.ENABLED){
+            Metrics.DICTIONARY_BYTES.add(out.size());
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Build the line-start table. The buffer is split into byte ranges that
+     * are scanned in parallel, then the per-range results are joined in order.
+     *
+     * @param buf - word list contents.
+     * @return offsets - start of each line, plus an end sentinel.
+     */
+    private static int[] index(ByteBuffer buf) {
+        int size = buf.limit();
+        int chunks = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() * 4, size / MIN_CHUNK));
+        int[][] parts = IntStream.range(0, chunks).parallel()
+                .mapToObj(c -> scan(buf, (int) ((long) size * c / chunks), (int) ((long) size * (c + 1) / chunks)))
+                .toArray(int[][]::new);
+        int total = 1;
+        for (int[] part : parts){
+            total += part[0];
+        }
+        boolean lastEnded = size == 0 || buf.get(size - 1) == '\n';
+        // A blank final line isn't a word; a missing final newline still ends one.
+        if (size > 0){
+            total++;
+        }
+        int[] offsets = new int[total];
+        int n = 0;
+        if (size > 0){
+            offsets[n++] = 0;
+        }
+        for (int[] part : parts){
+            System.arraycopy(part, 1, offsets, n, part[0]);
+            n += part[0];
+        }
+        offsets[n] = lastEnded ? size : size + 1;
+        return offsets;
+    }
+
+    /**
+     * Record the start of every line that begins inside a byte range.
+     *
+     * @param buf - word list contents.
+     * @param from - first byte to scan.
+     * @param to - one past the last byte to scan.
+     * @return starts - count in element 0, followed by the line starts.
+     */
+    private static int[] scan(ByteBuffer buf, int from, int to) {
+        int size = buf.limit();
+        int[] starts = new int[Math.max(16, (to - from) / 8)];
+        int n = 0;
+        int i;
+        for (i=from; i<to; i++){
+            if (buf.get(i) == '\n' && i + 1 < size){
+                if (++n == starts.length){
+                    starts = Arrays.copyOf(starts, starts.length * 2);
+                }
+                starts[n] = i + 1;
+            }
+        }
+        starts[0] = n;
+        return starts;
+    }
+
+    @Override
+    public int size() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Count the mapped bytes too: they are not on the heap, but they are
+     * still memory the dictionary keeps in use.
+     *
+     * @return bytes - approximate bytes used by the dictionary.
+     */
+    @Override
+    public long estimateBytes() {
+        return 16 + 4L * offsets.length + bytes.capacity();
+    }
+
+    @Override
+    public String getWord(int index) {
+        int start = offsets[index];
+        // Drop the newline, and a carriage return before it if the list has Windows line endings.
+        int end = offsets[index + 1] - 1;
+        if (end > start && bytes.get(end - 1) == '\r'){
+            end--;
+        }
+        byte[] word = new byte[end - start];
+        int i;
+        for (i=0; i<word.length; i++){
+            word[i] = bytes.get(start + i);
+        }
+        return new String(word, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Runtime counters and latency histograms for the game, exposed over JMX and as text.
+ */
+package hangman;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Low-overhead instrumentation. Turn it on with -Dhangman.metrics=true; the
+ * text dump interval is -Dhangman.metrics.interval (seconds, default 60, 0 for
+ * none). Every recording site is guarded by the constant ENABLED, so when it is
+ * off the JIT removes the guarded code entirely. When it is on, counters are
+ * LongAdders and histograms are fixed arrays of atomic buckets: no locks and
+ * no allocation on the recording path.
+ */
+public final class Metrics {
+
+    /** True if metrics are being collected. */
+    public static final boolean ENABLED = Boolean.getBoolean("hangman.metrics");
+
+    /** Dictionaries loaded from their source. */
+    public static final LongAdder DICTIONARY_LOADS = new LongAdder();
+    /** Bytes read while loading dictionaries. */
+    public static final LongAdder DICTIONARY_BYTES = new LongAdder();
+    /** Games started, won and lost. */
+    public static final LongAdder GAMES_STARTED = new LongAdder();
+    public static final LongAdder GAMES_WON = new LongAdder();
+    public static final LongAdder GAMES_LOST = new LongAdder();
+
+    /** Time to load a dictionary from its source. */
+    public static final Timer DICTIONARY_LOAD = new Timer("dictionary.load");
+    /** Time for WordList.preload() to load and index the dictionary in the background. */
+    public static final Timer PRELOAD = new Timer("dictionary.preload");
+    /** Time the first user of a preloaded WordList had to wait for it; the rest of the preload was hidden. */
+    public static final Timer PRELOAD_WAIT = new Timer("dictionary.preload.wait");
+    /** Time to pick a word in WordList.selectWord. */
+    public static final Timer SELECT_WORD = new Timer("word.select");
+    /** Time to evaluate one guess. */
+    public static final Timer GUESS = new Timer("game.guess");
+    /** Time from the start of a game to its win or loss. */
+    public static final Timer GAME = new Timer("game.duration");
+    /** Time to paint one frame of the canvas. */
+    public static final Timer PAINT = new Timer("canvas.paint");
+
+    private static final Timer[] TIMERS = {DICTIONARY_LOAD, PRELOAD, PRELOAD_WAIT, SELECT_WORD, GUESS, GAME, PAINT};
+
+    static {
+        if (ENABLED){
+            register();
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * A lock-free latency histogram with the same buckets as LatencyHistogram.
+     */
+    public static final class Timer {
+        private final String name;
+        private final AtomicLongArray counts = new AtomicLongArray(LatencyHistogram.BUCKETS);
+        private final LongAdder sum = new LongAdder();
+        private final LongAdder count = new LongAdder();
+
+        Timer(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Record the time since a start timestamp.
+         *
+         * @param startNanos - value of System.nanoTime() when the operation started.
+         */
+        public void since(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        /**
+         * Record one duration.
+         *
+         * @param nanos - the duration in nanoseconds.
+         */
+        public void record(long nanos) {
+            if (nanos < 0){
+                nanos = 0;
+            }
+            this.counts.incrementAndGet(LatencyHistogram.bucketOf(nanos));
+            this.sum.add(nanos);
+            this.count.increment();
+        }
+
+        /**
+         * Copy the current counts into a histogram that percentiles can be read from.
+         *
+         * @return snapshot - a copy of the recorded durations.
+         */
+        public LatencyHistogram snapshot() {
+            LatencyHistogram copy = new LatencyHistogram();
+            int i;
+            for (i=0; i<LatencyHistogram.BUCKETS; i++){
+                long n = this.counts.get(i);
+                if (n > 0){
+                    copy.add(i, n);
+                }
+            }
+            return copy;
+        }
+
+        /**
+         * @return name - the timer's name in dumps and JMX.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return count - number of durations recorded.
+         */
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * @return mean - average duration in nanoseconds, or 0 if none.
+         */
+        public double getMean() {
+            long n = count.sum();
+            return n == 0 ? 0 : (double) sum.sum() / n;
+        }
+    }
+
+    /**
+     * Wrap a stream so the bytes read through it count toward DICTIONARY_BYTES.
+     *
+     * @param in - stream to count.
+     * @return counted - a counting wrapper, or in itself if metrics are off.
+     */
+    static InputStream counting(InputStream in) {
+        if (!ENABLED){
+            return in;
+        }
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0){
+                    DICTIONARY_BYTES.increment();
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buf, int off, int len) throws IOException {
+                int n = super.read(buf, off, len);
+                if (n > 0){
+                    DICTIONARY_BYTES.add(n);
+                }
+                return n;
+            }
+        };
+    }
+
+    /**
+     * Write every counter and timer as plain text, one per line. Times are in microseconds.
+     *
+     * @return text - the current values.
+     */
+    public static String dump() {
+        StringBuilder out = new StringBuilder(512);
+        out.append("dictionary.loads ").append(DICTIONARY_LOADS.sum()).append('\n');
+        out.append("dictionary.bytes ").append(DICTIONARY_BYTES.sum()).append('\n');
+        DictionaryRegistry registry = Dictionaries.registry();
+        out.append(String.format("dictionary.cache lists=%d bytes=%d/%d hits=%d misses=%d evictions=%d%n",
+                registry.size(), registry.getBytes(), registry.getMaxBytes(),
+                registry.getHits(), registry.getMisses(), registry.getEvictions()));
+        out.append(String.format("dictionary.preload.hidden %.0f%%%n", getPreloadHiddenPercent()));
+        out.append("games.started ").append(GAMES_STARTED.sum()).append('\n');
+        out.append("games.won ").append(GAMES_WON.sum()).append('\n');
+        out.append("games.lost ").append(GAMES_LOST.sum()).append('\n');
+        for (Timer timer : TIMERS){
+            LatencyHistogram h = timer.snapshot();
+            out.append(String.format("%s count=%d mean=%.1fus p50=%.1fus p99=%.1fus max=%.1fus%n",
+                    timer.getName(), timer.getCount(), timer.getMean() / 1e3,
+                    h.percentile(0.50) / 1e3, h.percentile(0.99) / 1e3, h.getMax() / 1e3));
+        }
+        return out.toString();
+    }
+
+    /**
+     * Share of the dictionary preload that ran while the game was doing
+     * something else, rather than while a caller waited for it.
+     *
+     * @return hidden - percentage from 0 to 100; 0 if there has been no preload.
+     */
+    public static double getPreloadHiddenPercent() {
+        double total = PRELOAD.getMean() * PRELOAD.getCount();
+        if (total <= 0){
+            return 0;
+        }
+        double waited = PRELOAD_WAIT.getMean() * PRELOAD_WAIT.getCount();
+        return Math.max(0, 100.0 * (total - waited) / total);
+    }
+
+    /**
+     * JMX view of the metrics, registered as hangman:type=Metrics.
+     */
+    public interface MetricsMBean {
+        long getDictionaryLoads();
+        long getDictionaryBytes();
+        long getDictionaryCacheBytes();
+        long getDictionaryCacheHits();
+        long getDictionaryCacheMisses();
+        long getDictionaryCacheEvictions();
+        long getGamesStarted();
+        long getGamesWon();
+        long getGamesLost();
+        double getDictionaryLoadMeanMicros();
+        double getPreloadHiddenPercent();
+        double getSelectWordP99Micros();
+        double getGuessP99Micros();
+        double getGameDurationMeanMillis();
+        double getPaintP99Micros();
+        String getDump();
+    }
+
+    /**
+     * Implementation of the JMX view; reads the live counters on every call.
+     */
+    public static final class Bean implements MetricsMBean {
+        @Override public long getDictionaryLoads() { return DICTIONARY_LOADS.sum(); }
+        @Override public long getDictionaryBytes() { return DICTIONARY_BYTES.sum(); }
+        @Override public long getDictionaryCacheBytes() { return Dictionaries.registry().getBytes(); }
+        @Override public long getDictionaryCacheHits() { return Dictionaries.registry().getHits(); }
+        @Override public long getDictionaryCacheMisses() { return Dictionaries.registry().getMisses(); }
+        @Override public long getDictionaryCacheEvictions() { return Dictionaries.registry().getEvictions(); }
+        @Override public long getGamesStarted() { return GAMES_STARTED.sum(); }
+        @Override public long getGamesWon() { return GAMES_WON.sum(); }
+        @Override public long getGamesLost() { return GAMES_LOST.sum(); }
+        @Override public double getDictionaryLoadMeanMicros() { return DICTIONARY_LOAD.getMean() / 1e3; }
+        @Override public double getPreloadHiddenPercent() { return Metrics.getPreloadHiddenPercent(); }
+        @Override public double getSelectWordP99Micros() { return SELECT_WORD.snapshot().percentile(0.99) / 1e3; }
+        @Override public double getGuessP99Micros() { return GUESS.snapshot().percentile(0.99) / 1e3; }
+        @Override public double getGameDurationMeanMillis() { return GAME.getMean() / 1e6; }
+        @Override public double getPaintP99Micros() { return PAINT.snapshot().percentile(0.99) / 1e3; }
+        @Override public String getDump() { return dump(); }
+    }
+
+    private static void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new StandardMBean(new Bean(), MetricsMBean.class), new ObjectName("hangman:type=Metrics"));
+        } catch (JMException ex) {
+            System.err.println("Could not register metrics MBean: " + ex);
+        }
+        long interval = Long.getLong("hangman.metrics.interval", 60);
+        if (interval > 0){
+            ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "hangman-metrics");
+                t.setDaemon(true);
+                return t;
+            });
+            dumper.scheduleAtFixedRate(() -> System.err.print(dump()), interval, interval, TimeUnit.SECONDS);
+        }
+    }
+}
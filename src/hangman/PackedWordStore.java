@@ -0,0 +1,312 @@
+/*
+ * Dictionary that packs each a-z word into a single long, five bits per letter.
+ */
+package hangman;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Primitive word store. A word of up to 12 lowercase letters is kept in one long:
+ * letter i sits in bits 5i to 5i+4 as a value from 1 ('a') to 26 ('z'), and the
+ * unused high fields are 0, so the length can be read off the highest set bit.
+ * Anything else (longer words, capitals, accents) goes to an overflow array and
+ * its long holds a marker in the top four bits plus the overflow slot.
+ * <p>
+ * Words aren't kept as Strings, which is what keeps the bundled list near
+ * 1 MB instead of 11 MB, so getWord() decodes a new String on every call.
+ * getLength() and getLetter() read straight from the long and allocate nothing.
+ */
+public final class PackedWordStore implements Dictionary {
+
+    /** Longest word that fits in one long. */
+    public static final int MAX_PACKED_LENGTH = 12;
+
+    /** Value returned by pack() for a word that can't be packed. */
+    public static final long NOT_PACKABLE = -1L;
+
+    static final long OVERFLOW_FLAG = 0xFL << 60;
+
+    private final long[] codes;
+    private final String[] overflow;
+
+    /**
+     * Constructor taking already-packed codes and the overflow words they refer to.
+     *
+     * @param codes - one code per word.
+     * @param overflow - words that couldn't be packed.
+     */
+    PackedWordStore(long[] codes, String[] overflow) {
+        this.codes = codes;
+        this.overflow = overflow;
+    }
+
+    /**
+     * Pack every word of another dictionary.
+     *
+     * @param source - words to pack.
+     * @return store - packed copy of the words.
+     */
+    public static PackedWordStore of(Dictionary source) {
+        long[] codes = new long[source.size()];
+        List<String> overflow = new ArrayList<>();
+        int i;
+        for (i=0; i<codes.length; i++){
+            String word = source.getWord(i);
+            long code = pack(word);
+            if (code == NOT_PACKABLE){
+                code = overflowCode(overflow.size());
+                overflow.add(word);
+            }
+            codes[i] = code;
+        }
+        return new PackedWordStore(codes, overflow.toArray(new String[overflow.size()]));
+    }
+
+    /**
+     * Read a newline-separated word list straight into packed form. Lines are
+     * packed from their bytes; only overflow words ever become Strings.
+     *
+     * @param path - location of the word list.
+     * @return store - the packed words.
+     * @throws IOException if the list can't be read.
+     * @throws NullPointerException if path is null.
+     */
+    public static PackedWordStore load(URL path) throws IOException, NullPointerException {
+        ByteBuffer buf;
+        if ("file".equals(path.getProtocol())){
+            buf = MappedDictionary.map(MappedDictionary.toPath(path));
+        }else{
+            try (InputStream in = path.openStream()) {
+                buf = ByteBuffer.wrap(MappedDictionary.readFully(in));
+            }
+        }
+        return parse(buf, new long[0], new String[0]);
+    }
+
+    /**
+     * Make a new store with this one's words followed by the lines of some
+     * more text, for a word list that has been appended to. Only the new
+     * lines are parsed; this store is unchanged.
+     *
+     * @param buf - the appended text, from position 0 to its limit.
+     * @return store - the words of both.
+     */
+    PackedWordStore append(ByteBuffer buf) {
+        return parse(buf, this.codes, this.overflow);
+    }
+
+    private static PackedWordStore parse(ByteBuffer buf, long[] base, String[] baseOverflow) {
+        int size = buf.limit();
+        long[] codes = Arrays.copyOf(base, base.length + Math.max(16, size / 8));
+        List<String> overflow = new ArrayList<>(Arrays.asList(baseOverflow));
+        int n = base.length;
+        int start = 0;
+        while (start < size){
+            int end = start;
+            while (end < size && buf.get(end) != '\n'){
+                end++;
+            }
+            int next = end + 1;
+            if (end > start && buf.get(end - 1) == '\r'){
+                end--;
+            }
+            long code = pack(buf, start, end);
+            if (code == NOT_PACKABLE){
+                byte[] word = new byte[end - start];
+                int i;
+                for (i=0; i<word.length; i++){
+                    word[i] = buf.get(start + i);
+                }
+                code = overflowCode(overflow.size());
+                overflow.add(new String(word, StandardCharsets.UTF_8));
+            }
+            if (n == codes.length){
+                codes = Arrays.copyOf(codes, n * 2);
+            }
+            codes[n++] = code;
+            start = next;
+        }
+        return new PackedWordStore(Arrays.copyOf(codes, n), overflow.toArray(new String[overflow.size()]));
+    }
+
+    /**
+     * Pack a word into a long.
+     *
+     * @param word - the word.
+     * @return code - packed word, or NOT_PACKABLE if it is longer than
+     * MAX_PACKED_LENGTH or has anything other than a-z in it.
+     */
+    public static long pack(CharSequence word) {
+        int len = word.length();
+        if (len > MAX_PACKED_LENGTH){
+            return NOT_PACKABLE;
+        }
+        long code = 0;
+        int i;
+        for (i=0; i<len; i++){
+            char c = word.charAt(i);
+            if (c < 'a' || c > 'z'){
+                return NOT_PACKABLE;
+            }
+            code |= (long) (c - 'a' + 1) << (5 * i);
+        }
+        return code;
+    }
+
+    /**
+     * Pack a word held as ASCII bytes.
+     *
+     * @param buf - bytes holding the word.
+     * @param from - first byte of the word.
+     * @param to - one past the last byte of the word.
+     * @return code - packed word, or NOT_PACKABLE.
+     */
+    static long pack(ByteBuffer buf, int from, int to) {
+        if (to - from > MAX_PACKED_LENGTH){
+            return NOT_PACKABLE;
+        }
+        long code = 0;
+        int i;
+        for (i=from; i<to; i++){
+            int c = buf.get(i);
+            if (c < 'a' || c > 'z'){
+                return NOT_PACKABLE;
+            }
+            code |= (long) (c - 'a' + 1) << (5 * (i - from));
+        }
+        return code;
+    }
+
+    /**
+     * Build the code that points a word at an overflow slot.
+     *
+     * @param slot - position in the overflow array.
+     * @return code - overflow marker for that slot.
+     */
+    static long overflowCode(int slot) {
+        return OVERFLOW_FLAG | slot;
+    }
+
+    /**
+     * Get the length of a packed word.
+     *
+     * @param code - packed word (not an overflow marker).
+     * @return length - number of letters.
+     */
+    public static int lengthOf(long code) {
+        return (68 - Long.numberOfLeadingZeros(code)) / 5;
+    }
+
+    /**
+     * Get one letter out of a packed word.
+     *
+     * @param code - packed word (not an overflow marker).
+     * @param pos - letter position.
+     * @return letter - the letter, a-z.
+     */
+    public static char letterOf(long code, int pos) {
+        return (char) ('a' - 1 + ((code >>> (5 * pos)) & 31));
+    }
+
+    /**
+     * Get the raw code stored for a word. Codes of overflow words have isPacked() false.
+     *
+     * @param index - position of the word.
+     * @return code - the stored long.
+     */
+    public long getCode(int index) {
+        return codes[index];
+    }
+
+    /**
+     * Find out whether a word is held packed or in the overflow array.
+     *
+     * @param index - position of the word.
+     * @return isPacked - true if the word is packed.
+     */
+    public boolean isPacked(int index) {
+        return (codes[index] & OVERFLOW_FLAG) != OVERFLOW_FLAG;
+    }
+
+    /**
+     * Get the number of words that had to go to the overflow array.
+     *
+     * @return count - number of overflow words.
+     */
+    public int getOverflowCount() {
+        return overflow.length;
+    }
+
+    /**
+     * Copy a word's letters into a char array without creating a String.
+     *
+     * @param index - position of the word.
+     * @param dest - array to fill; must be at least as long as the word.
+     * @return length - number of letters written.
+     */
+    public int unpack(int index, char[] dest) {
+        long code = codes[index];
+        if ((code & OVERFLOW_FLAG) == OVERFLOW_FLAG){
+            String word = overflow[(int) code];
+            word.getChars(0, word.length(), dest, 0);
+            return word.length();
+        }
+        int len = lengthOf(code);
+        int i;
+        for (i=0; i<len; i++){
+            dest[i] = (char) ('a' - 1 + (code & 31));
+            code >>>= 5;
+        }
+        return len;
+    }
+
+    @Override
+    public int size() {
+        return codes.length;
+    }
+
+    @Override
+    public String getWord(int index) {
+        long code = codes[index];
+        if ((code & OVERFLOW_FLAG) == OVERFLOW_FLAG){
+            return overflow[(int) code];
+        }
+        char[] letters = new char[lengthOf(code)];
+        unpack(index, letters);
+        return new String(letters);
+    }
+
+    @Override
+    public long estimateBytes() {
+        long bytes = 16 + 8L * codes.length + 16 + 4L * overflow.length;
+        for (String word : overflow){
+            bytes += 24 + 16 + 2L * word.length();
+        }
+        return bytes;
+    }
+
+    @Override
+    public int getLength(int index) {
+        long code = codes[index];
+        if ((code & OVERFLOW_FLAG) == OVERFLOW_FLAG){
+            return overflow[(int) code].length();
+        }
+        return lengthOf(code);
+    }
+
+    @Override
+    public char getLetter(int index, int pos) {
+        long code = codes[index];
+        if ((code & OVERFLOW_FLAG) == OVERFLOW_FLAG){
+            return overflow[(int) code].charAt(pos);
+        }
+        return letterOf(code, pos);
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * Answers "which words fit this hangman pattern?" with compressed bitmap intersections.
+ */
+package hangman;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Query engine over a dictionary for patterns like "_a__e_" with some
+ * letters ruled out. Per word length it keeps, for every position and
+ * letter, the set of words with that letter there, and for every letter
+ * the set of words containing it, as compressed bitmaps (taken from the
+ * LetterIndex). A query intersects those sets 64 words at a time, driven
+ * by its most selective bitmap so blocks with no chance of a match are
+ * never looked at, and never touches a String.
+ * <p>
+ * Pattern characters:
+ * <ul>
+ * <li>a-z: that letter is at that position.</li>
+ * <li>'_': a letter not yet shown, i.e. not any of the a-z letters
+ * elsewhere in the pattern (revealing a letter shows every copy of it).</li>
+ * <li>'?': any character.</li>
+ * </ul>
+ * Any other character matches nothing. The index is immutable, so queries
+ * can run from any number of threads; they allocate nothing but what the
+ * caller passes in for results.
+ */
+public final class PatternIndex {
+
+    // One index per dictionary, built on first use; it holds no reference back to the dictionary.
+    private static final Map<Dictionary, PatternIndex> INDEXES = new WeakHashMap<>();
+
+    // groups[len] is null if there are no words of that length
+    private final Group[] groups;
+
+    /**
+     * A set of word numbers stored as only its non-zero 64-bit blocks, with
+     * a presence bit per block and a running count per 64 blocks so any
+     * block is found in O(1).
+     */
+    static final class Bitmap {
+        // Bit b set if block b has any words in it
+        private final long[] present;
+        // Number of non-zero blocks before each long of present
+        private final int[] rank;
+        // The non-zero blocks, in order
+        private final long[] blocks;
+
+        Bitmap(long[] dense) {
+            this.present = new long[(dense.length + 63) >>> 6];
+            this.rank = new int[this.present.length];
+            int count = 0;
+            int b;
+            for (b=0; b<dense.length; b++){
+                if (dense[b] != 0){
+                    this.present[b >>> 6] |= 1L << b;
+                    count++;
+                }
+            }
+            this.blocks = new long[count];
+            count = 0;
+            for (b=0; b<dense.length; b++){
+                if ((b & 63) == 0){
+                    this.rank[b >>> 6] = count;
+                }
+                if (dense[b] != 0){
+                    this.blocks[count++] = dense[b];
+                }
+            }
+        }
+
+        /**
+         * @param b - block number.
+         * @return bits - the words of that block in the set.
+         */
+        long block(int b) {
+            long p = this.present[b >>> 6];
+            long bit = 1L << b;
+            if ((p & bit) == 0){
+                return 0;
+            }
+            return this.blocks[this.rank[b >>> 6] + Long.bitCount(p & (bit - 1))];
+        }
+
+        /**
+         * @param from - first block number to look at.
+         * @return b - the first non-zero block at or after from, or -1 if there is none.
+         */
+        int nextBlock(int from) {
+            int i = from >>> 6;
+            if (i >= this.present.length){
+                return -1;
+            }
+            long p = this.present[i] & (-1L << from);
+            while (p == 0){
+                if (++i == this.present.length){
+                    return -1;
+                }
+                p = this.present[i];
+            }
+            return (i << 6) + Long.numberOfTrailingZeros(p);
+        }
+
+        /**
+         * @return blockCount - number of non-zero blocks.
+         */
+        int blockCount() {
+            return blocks.length;
+        }
+    }
+
+    // Words of one length and their bitmaps.
+    private static final class Group {
+        final int length;
+        final int size;
+        final int span;
+        // Dictionary index of each word number
+        final int[] words;
+        // at[pos * 26 + letter]
+        final Bitmap[] at;
+        final Bitmap[] contains;
+
+        Group(LetterIndex.Group source) {
+            this.length = source.length;
+            this.size = source.size();
+            this.span = source.span;
+            this.words = source.words;
+            this.at = new Bitmap[source.at.length];
+            this.contains = new Bitmap[26];
+            int i;
+            for (i=0; i<this.at.length; i++){
+                this.at[i] = new Bitmap(source.at[i]);
+            }
+            for (i=0; i<26; i++){
+                this.contains[i] = new Bitmap(source.contains[i]);
+            }
+        }
+    }
+
+    private PatternIndex(Group[] groups) {
+        this.groups = groups;
+    }
+
+    /**
+     * Get the index for a dictionary, building it the first time it is asked for.
+     *
+     * @param dictionary - the words to index.
+     * @return index - the shared index for that dictionary.
+     */
+    public static PatternIndex of(Dictionary dictionary) {
+        LetterIndex letters = LetterIndex.of(dictionary);
+        synchronized (INDEXES){
+            PatternIndex index = INDEXES.get(dictionary);
+            if (index == null){
+                Group[] groups = new Group[letters.getMaxLength() + 1];
+                int len;
+                for (len=1; len<groups.length; len++){
+                    LetterIndex.Group g = letters.group(len);
+                    if (g != null){
+                        groups[len] = new Group(g);
+                    }
+                }
+                index = new PatternIndex(groups);
+                INDEXES.put(dictionary, index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Make a letter mask for the excluded argument of the queries.
+     *
+     * @param letters - the letters; anything outside a-z is ignored.
+     * @return mask - bit ('x' - 'a') set for each letter x.
+     */
+    public static int letters(CharSequence letters) {
+        int mask = 0;
+        int i;
+        for (i=0; i<letters.length(); i++){
+            int c = letters.charAt(i) - 'a';
+            if (c >= 0 && c < 26){
+                mask |= 1 << c;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Count the words that fit a pattern.
+     *
+     * @param pattern - one character per position, as described above.
+     * @param excluded - letters the words must not contain, as from letters().
+     * @return count - number of matching words.
+     */
+    public int count(CharSequence pattern, int excluded) {
+        return scan(pattern, excluded, 0, null, null);
+    }
+
+    /**
+     * Get a page of the words that fit a pattern, in dictionary order within
+     * their length. For the next page, call again with offset increased by
+     * the number returned.
+     *
+     * @param pattern - one character per position, as described above.
+     * @param excluded - letters the words must not contain, as from letters().
+     * @param offset - number of matches to skip.
+     * @param out - filled with the dictionary indexes of the matches.
+     * @return written - number of indexes put in out; less than out.length on the last page.
+     */
+    public int find(CharSequence pattern, int excluded, int offset, int[] out) {
+        if (out.length == 0){
+            return 0;
+        }
+        return scan(pattern, excluded, Math.max(0, offset), out, null);
+    }
+
+    /**
+     * Count the words that fit a pattern, and how many of them contain each
+     * letter, e.g. to suggest a guess.
+     *
+     * @param pattern - one character per position, as described above.
+     * @param excluded - letters the words must not contain, as from letters().
+     * @param counts - at least 26 long; counts[c] is set to the number of matches containing ('a' + c).
+     * @return count - number of matching words.
+     */
+    public int countLetters(CharSequence pattern, int excluded, int[] counts) {
+        int c;
+        for (c=0; c<26; c++){
+            counts[c] = 0;
+        }
+        return scan(pattern, excluded, 0, null, counts);
+    }
+
+    // Every query: walk the blocks that could match and either count, page or tally letters.
+    private int scan(CharSequence pattern, int excluded, int offset, int[] out, int[] letterCounts) {
+        int length = pattern.length();
+        Group g = length > 0 && length < this.groups.length ? this.groups[length] : null;
+        if (g == null){
+            return 0;
+        }
+        // The letters shown, and the most selective of their bitmaps to drive the scan
+        int shown = 0;
+        Bitmap driver = null;
+        int pos;
+        for (pos=0; pos<length; pos++){
+            char ch = pattern.charAt(pos);
+            int c = ch - 'a';
+            if (c >= 0 && c < 26){
+                shown |= 1 << c;
+                Bitmap b = g.at[pos * 26 + c];
+                if (driver == null || b.blockCount() < driver.blockCount()){
+                    driver = b;
+                }
+            }else if (ch != '_' && ch != '?'){
+                return 0;
+            }
+        }
+        if ((shown & excluded) != 0){
+            return 0;
+        }
+        int found = 0;
+        int written = 0;
+        int lastBlock = g.span - 1;
+        long lastMask = g.size % 64 == 0 ? -1L : (1L << (g.size % 64)) - 1;
+        int b = driver == null ? 0 : driver.nextBlock(0);
+        while (b >= 0 && b <= lastBlock){
+            long m = match(g, b, pattern, shown, excluded, b == lastBlock ? lastMask : -1L);
+            if (m != 0){
+                int n = Long.bitCount(m);
+                if (letterCounts != null){
+                    int c;
+                    for (c=0; c<26; c++){
+                        letterCounts[c] += Long.bitCount(m & g.contains[c].block(b));
+                    }
+                }
+                if (out != null){
+                    if (found + n > offset){
+                        // Skip the matches before the offset that fall in this block
+                        int skip = Math.max(0, offset - found);
+                        while (m != 0){
+                            int bit = Long.numberOfTrailingZeros(m);
+                            m &= m - 1;
+                            if (skip > 0){
+                                skip--;
+                                continue;
+                            }
+                            out[written++] = g.words[(b << 6) + bit];
+                            if (written == out.length){
+                                return written;
+                            }
+                        }
+                    }
+                }
+                found += n;
+            }
+            b = driver == null ? b + 1 : driver.nextBlock(b + 1);
+        }
+        return out != null ? written : found;
+    }
+
+    // The words of block b that fit the pattern.
+    private static long match(Group g, int b, CharSequence pattern, int shown, int excluded, long m) {
+        int length = g.length;
+        int pos;
+        for (pos=0; pos<length && m != 0; pos++){
+            char ch = pattern.charAt(pos);
+            int c = ch - 'a';
+            if (c >= 0 && c < 26){
+                m &= g.at[pos * 26 + c].block(b);
+            }else if (ch == '_'){
+                // Not a letter that is shown elsewhere
+                int s = shown;
+                while (s != 0){
+                    m &= ~g.at[pos * 26 + Integer.numberOfTrailingZeros(s)].block(b);
+                    s &= s - 1;
+                }
+            }
+        }
+        int x = excluded;
+        while (x != 0 && m != 0){
+            m &= ~g.contains[Integer.numberOfTrailingZeros(x)].block(b);
+            x &= x - 1;
+        }
+        return m;
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Win/loss statistics per player and per word length, safe to update from any thread.
+ */
+package hangman;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent scoreboard. Wins and losses are LongAdders, so games finishing on
+ * many threads at once don't fight over one counter, and nothing is lost. Each
+ * player also has a current and best winning streak. Players are kept in a
+ * skip list ordered by wins, which a win moves a player along in O(log n), so
+ * the top-K leaderboard is a walk over the first K entries however many
+ * players there are. Readers get immutable Snapshots.
+ */
+public final class Scoreboard {
+
+    private final ConcurrentMap<String, Player> players = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Rank> ranking = new ConcurrentSkipListSet<>();
+    private final LongAdder[] winsByLength = adders(GuessEngine.MAX_LENGTH + 1);
+    private final LongAdder[] lossesByLength = adders(GuessEngine.MAX_LENGTH + 1);
+    private final LongAdder wins = new LongAdder();
+    private final LongAdder losses = new LongAdder();
+
+    /**
+     * Immutable copy of one player's (or everyone's) results.
+     */
+    public static final class Snapshot {
+        /** No games played. */
+        public static final Snapshot EMPTY = new Snapshot("", 0, 0, 0, 0);
+
+        private final String name;
+        private final long wins;
+        private final long losses;
+        private final int streak;
+        private final int bestStreak;
+
+        Snapshot(String name, long wins, long losses, int streak, int bestStreak) {
+            this.name = name;
+            this.wins = wins;
+            this.losses = losses;
+            this.streak = streak;
+            this.bestStreak = bestStreak;
+        }
+
+        /**
+         * @return name - the player's name, or "" for totals.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return wins - games won.
+         */
+        public long getWins() {
+            return wins;
+        }
+
+        /**
+         * @return losses - games lost.
+         */
+        public long getLosses() {
+            return losses;
+        }
+
+        /**
+         * @return streak - wins in a row up to the last game; 0 after a loss.
+         */
+        public int getStreak() {
+            return streak;
+        }
+
+        /**
+         * @return bestStreak - longest run of wins.
+         */
+        public int getBestStreak() {
+            return bestStreak;
+        }
+
+        @Override
+        public String toString() {
+            return name + " " + wins + "W " + losses + "L streak " + streak + " best " + bestStreak;
+        }
+    }
+
+    /**
+     * Live counters for one player.
+     */
+    private static final class Player {
+        final String name;
+        final LongAdder wins = new LongAdder();
+        final LongAdder losses = new LongAdder();
+        // best streak in the high 32 bits, current streak in the low 32
+        final AtomicLong streaks = new AtomicLong();
+        // This player's entry in the ranking; replaced under the player's lock, read without it by a loss
+        volatile Rank rank;
+
+        Player(String name) {
+            this.name = name;
+        }
+
+        Snapshot snapshot() {
+            long s = this.streaks.get();
+            return new Snapshot(this.name, this.wins.sum(), this.losses.sum(), (int) s, (int) (s >>> 32));
+        }
+    }
+
+    /**
+     * Position in the leaderboard: most wins first, then by name.
+     */
+    private static final class Rank implements Comparable<Rank> {
+        final long wins;
+        final Player player;
+
+        Rank(long wins, Player player) {
+            this.wins = wins;
+            this.player = player;
+        }
+
+        @Override
+        public int compareTo(Rank other) {
+            int c = Long.compare(other.wins, this.wins);
+            return c != 0 ? c : this.player.name.compareTo(other.player.name);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Rank && compareTo((Rank) other) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(wins) * 31 + player.name.hashCode();
+        }
+    }
+
+    /**
+     * Record a finished game.
+     *
+     * @param name - the player's name.
+     * @param length - length of the word played.
+     * @param won - true for a win, false for a loss.
+     */
+    public void record(String name, int length, boolean won) {
+        Player player = this.players.computeIfAbsent(name, Player::new);
+        int len = Math.max(0, Math.min(length, GuessEngine.MAX_LENGTH));
+        if (won){
+            this.wins.increment();
+            this.winsByLength[len].increment();
+            player.wins.increment();
+            player.streaks.updateAndGet(s -> {
+                long streak = (s & 0xFFFFFFFFL) + 1;
+                return Math.max(s >>> 32, streak) << 32 | streak;
+            });
+            rerank(player);
+        }else{
+            this.losses.increment();
+            this.lossesByLength[len].increment();
+            player.losses.increment();
+            player.streaks.updateAndGet(s -> s & 0xFFFFFFFF00000000L);
+            if (player.rank == null){
+                rerank(player);
+            }
+        }
+    }
+
+    private void rerank(Player player) {
+        // Only games by the same player contend for this lock.
+        synchronized (player){
+            long count = player.wins.sum();
+            if (player.rank != null && player.rank.wins == count){
+                return;
+            }
+            // Out before in, so a leaderboard walk never sees the player twice
+            if (player.rank != null){
+                this.ranking.remove(player.rank);
+            }
+            Rank next = new Rank(count, player);
+            this.ranking.add(next);
+            player.rank = next;
+        }
+    }
+
+    /**
+     * Get one player's results.
+     *
+     * @param name - the player's name.
+     * @return snapshot - the player's results, with zeros if they haven't played.
+     */
+    public Snapshot snapshot(String name) {
+        Player player = this.players.get(name);
+        return player == null ? new Snapshot(name, 0, 0, 0, 0) : player.snapshot();
+    }
+
+    /**
+     * Get the results of every game on the scoreboard.
+     *
+     * @return snapshot - total wins and losses; streaks are 0.
+     */
+    public Snapshot total() {
+        return new Snapshot("", this.wins.sum(), this.losses.sum(), 0, 0);
+    }
+
+    /**
+     * Get the players with the most wins.
+     *
+     * @param k - how many players to return.
+     * @return leaders - up to k snapshots, most wins first.
+     */
+    public List<Snapshot> top(int k) {
+        List<Snapshot> leaders = new ArrayList<>(Math.max(0, Math.min(k, 64)));
+        Iterator<Rank> it = this.ranking.iterator();
+        while (leaders.size() < k && it.hasNext()){
+            leaders.add(it.next().player.snapshot());
+        }
+        return leaders;
+    }
+
+    /**
+     * @param length - word length.
+     * @return wins - games won with words of that length.
+     */
+    public long getWins(int length) {
+        return length >= 0 && length < winsByLength.length ? winsByLength[length].sum() : 0;
+    }
+
+    /**
+     * @param length - word length.
+     * @return losses - games lost with words of that length.
+     */
+    public long getLosses(int length) {
+        return length >= 0 && length < lossesByLength.length ? lossesByLength[length].sum() : 0;
+    }
+
+    /**
+     * @return playerCount - number of players with at least one game.
+     */
+    public int getPlayerCount() {
+        return players.size();
+    }
+
+    private static LongAdder[] adders(int n) {
+        LongAdder[] adders = new LongAdder[n];
+        int i;
+        for (i=0; i<n; i++){
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Fixed-size pool of reusable GameSessions for hosting many games in one JVM.
+ */
+package hangman;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free pool of game sessions. Free slots are kept on a stack threaded
+ * through an int array; the head is a single AtomicLong holding the top slot
+ * and a version counter, so a pop can't be confused by a slot that was popped
+ * and pushed back in between (ABA). Sessions are created the first time their
+ * slot is used and reused after that, so memory grows with the peak number of
+ * live games rather than the number of games played.
+ */
+public final class SessionPool {
+
+    private static final int EMPTY = -1;
+
+    private final AtomicReferenceArray<GameSession> sessions;
+    // next[i] is the slot under slot i on the free stack
+    private final int[] next;
+    // Low 32 bits: top free slot (or EMPTY); high 32 bits: version
+    private final AtomicLong head;
+    private final AtomicInteger active = new AtomicInteger();
+
+    /**
+     * Constructor taking the maximum number of sessions that can be live at once.
+     *
+     * @param capacity - number of slots.
+     */
+    public SessionPool(int capacity) {
+        if (capacity <= 0){
+            throw new IllegalArgumentException("Pool capacity must be positive: " + capacity);
+        }
+        this.sessions = new AtomicReferenceArray<>(capacity);
+        this.next = new int[capacity];
+        int i;
+        for (i=0; i<capacity; i++){
+            this.next[i] = i + 1 < capacity ? i + 1 : EMPTY;
+        }
+        this.head = new AtomicLong(0);
+    }
+
+    /**
+     * Take a session out of the pool. It comes back IDLE.
+     *
+     * @return session - a free session, or null if every slot is in use.
+     */
+    public GameSession acquire() {
+        long h;
+        int slot;
+        do {
+            h = this.head.get();
+            slot = (int) h;
+            if (slot == EMPTY){
+                return null;
+            }
+        } while (!this.head.compareAndSet(h, pack(this.next[slot], (int) (h >>> 32) + 1)));
+        this.active.incrementAndGet();
+        GameSession session = this.sessions.get(slot);
+        if (session == null){
+            session = new GameSession(slot);
+            this.sessions.set(slot, session);
+        }
+        return session;
+    }
+
+    /**
+     * Give a session back to the pool. The caller must not use it afterwards.
+     *
+     * @param session - a session from this pool.
+     */
+    public void release(GameSession session) {
+        int slot = session.getId();
+        if (slot < 0 || slot >= this.next.length || this.sessions.get(slot) != session){
+            throw new IllegalArgumentException("Session is not from this pool");
+        }
+        session.clear();
+        long h;
+        do {
+            h = this.head.get();
+            this.next[slot] = (int) h;
+        } while (!this.head.compareAndSet(h, pack(slot, (int) (h >>> 32) + 1)));
+        this.active.decrementAndGet();
+    }
+
+    /**
+     * Look up a live session by its id.
+     *
+     * @param id - session id from GameSession.getId().
+     * @return session - the session in that slot, or null if the slot was never used.
+     */
+    public GameSession get(int id) {
+        return this.sessions.get(id);
+    }
+
+    /**
+     * @return capacity - maximum number of live sessions.
+     */
+    public int getCapacity() {
+        return next.length;
+    }
+
+    /**
+     * @return active - number of sessions currently taken out of the pool.
+     */
+    public int getActive() {
+        return active.get();
+    }
+
+    private static long pack(int slot, int version) {
+        return ((long) version << 32) | (slot & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * No-repeat word selection: a random permutation of the dictionary, one word at a time.
+ */
+package hangman;
+
+import java.util.SplittableRandom;
+
+/**
+ * Hands out every index of a dictionary exactly once per cycle, in an order
+ * that is new each cycle. The order is a keyed Feistel network over the
+ * smallest even number of bits that covers the dictionary; values that land
+ * past the end are fed through again ("cycle walking"), which takes under
+ * four rounds on average. So the permutation is computed, not stored: a draw
+ * is O(1) and the bag holds no array however big the dictionary is.
+ */
+public final class ShuffleBag implements WordSelector {
+
+    private static final int ROUNDS = 4;
+
+    private final SplittableRandom random;
+    private final long[] keys = new long[ROUNDS];
+    private int size = -1;
+    private int halfBits;
+    private long halfMask;
+    private int drawn;
+
+    /**
+     * Constructor taking the seed for the order of every cycle.
+     *
+     * @param seed - the seed.
+     */
+    public ShuffleBag(long seed) {
+        this.random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Pick the next word of the current cycle, starting a new cycle once every
+     * word has been handed out or the dictionary has changed size.
+     *
+     * @param dictionary - the words to pick from; must not be empty.
+     * @return index - position of the chosen word.
+     */
+    @Override
+    public synchronized int next(Dictionary dictionary) {
+        int n = dictionary.size();
+        if (n != this.size || this.drawn == n){
+            newCycle(n);
+        }
+        long x = this.drawn++;
+        do{
+            x = permute(x);
+        }while(x >= n);
+        return (int) x;
+    }
+
+    /**
+     * @return remaining - words left before the current cycle repeats.
+     */
+    public synchronized int getRemaining() {
+        return size < 0 ? 0 : size - drawn;
+    }
+
+    private void newCycle(int n) {
+        int bits = Math.max(2, 64 - Long.numberOfLeadingZeros(Math.max(1, n - 1)));
+        bits += bits & 1;
+        this.size = n;
+        this.halfBits = bits / 2;
+        this.halfMask = (1L << this.halfBits) - 1;
+        this.drawn = 0;
+        int i;
+        for (i=0; i<ROUNDS; i++){
+            this.keys[i] = this.random.nextLong();
+        }
+    }
+
+    // One pass of the Feistel network: a bijection on [0, 2^(2*halfBits)).
+    private long permute(long x) {
+        long left = x >>> this.halfBits;
+        long right = x & this.halfMask;
+        int i;
+        for (i=0; i<ROUNDS; i++){
+            long next = left ^ (mix(right ^ this.keys[i]) & this.halfMask);
+            left = right;
+            right = next;
+        }
+        return left << this.halfBits | right;
+    }
+
+    // 64-bit finalizer from MurmurHash3.
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb93fe53e2d34L;
+        return z ^ (z >>> 33);
+    }
+}
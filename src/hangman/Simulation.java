@@ -0,0 +1,256 @@
+/*
+ * Non-interactive batch mode: plays large numbers of games with a computer player.
+ */
+package hangman;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Plays a batch of games in parallel and reports how they went. The games are
+ * split across a fork-join pool; each task gets its own SplittableRandom (split
+ * from the one above it, so a seed reproduces the whole run), its own session
+ * and its own player, and the per-task results are merged on the way back up.
+ */
+public final class Simulation {
+
+    // Games played by one task before it stops splitting.
+    private static final int LEAF_GAMES = 2048;
+
+    /**
+     * Built-in computer players.
+     */
+    public enum Player {
+        /** Bitmap solver that tracks the words still possible. */
+        SOLVER {
+            @Override
+            GuessStrategy create(Dictionary dictionary, SplittableRandom random) {
+                return new Solver(dictionary);
+            }
+        },
+        /** Guesses letters from most to least common, ignoring what it sees. */
+        FREQUENCY {
+            @Override
+            GuessStrategy create(Dictionary dictionary, SplittableRandom random) {
+                return new LetterOrder(null);
+            }
+        },
+        /** Guesses unguessed letters at random. */
+        RANDOM {
+            @Override
+            GuessStrategy create(Dictionary dictionary, SplittableRandom random) {
+                return new LetterOrder(random);
+            }
+        };
+
+        /**
+         * Make a new player for one worker.
+         *
+         * @param dictionary - words the games are played with.
+         * @param random - the worker's random source.
+         * @return strategy - a new player.
+         */
+        abstract GuessStrategy create(Dictionary dictionary, SplittableRandom random);
+    }
+
+    /**
+     * Totals for a set of games, kept per word length.
+     */
+    public static final class Result {
+        final long[] games = new long[GuessEngine.MAX_LENGTH + 1];
+        final long[] wins = new long[GuessEngine.MAX_LENGTH + 1];
+        long guesses;
+        // Words drawn that can't be played: empty, or longer than GuessEngine.MAX_LENGTH
+        long skipped;
+        long nanos;
+
+        void merge(Result other) {
+            int i;
+            for (i=0; i<this.games.length; i++){
+                this.games[i] += other.games[i];
+                this.wins[i] += other.wins[i];
+            }
+            this.guesses += other.guesses;
+            this.skipped += other.skipped;
+        }
+
+        /**
+         * @return games - total games played.
+         */
+        public long getGames() {
+            long total = 0;
+            for (long n : games){
+                total += n;
+            }
+            return total;
+        }
+
+        /**
+         * @return wins - total games won.
+         */
+        public long getWins() {
+            long total = 0;
+            for (long n : wins){
+                total += n;
+            }
+            return total;
+        }
+
+        /**
+         * @return guesses - total guesses made.
+         */
+        public long getGuesses() {
+            return guesses;
+        }
+
+        /**
+         * @return skipped - games not played because the word drawn was empty or too long.
+         */
+        public long getSkipped() {
+            return skipped;
+        }
+
+        /**
+         * Print win rates per word length and overall throughput.
+         */
+        public void print() {
+            double seconds = nanos / 1e9;
+            System.out.println("Length    Games      Wins   Win rate");
+            int len;
+            for (len=1; len<games.length; len++){
+                if (games[len] > 0){
+                    System.out.printf("%6d %8d %9d %9.2f%%%n", len, games[len], wins[len], 100.0 * wins[len] / games[len]);
+                }
+            }
+            System.out.printf("Total  %8d %9d %9.2f%%%n", getGames(), getWins(), 100.0 * getWins() / Math.max(1, getGames()));
+            if (skipped > 0){
+                System.out.printf("Skipped %d games: the word drawn was empty or over %d letters%n", skipped, GuessEngine.MAX_LENGTH);
+            }
+            System.out.printf("%.3f s, %.0f games/s, %.0f guesses/s%n", seconds, getGames() / seconds, guesses / seconds);
+        }
+    }
+
+    private final Dictionary dictionary;
+    private final Player player;
+
+    /**
+     * Constructor taking the words to play with and the computer player to use.
+     *
+     * @param dictionary - the secret words are picked from here.
+     * @param player - strategy to play with.
+     */
+    public Simulation(Dictionary dictionary, Player player) {
+        this.dictionary = dictionary;
+        this.player = player;
+    }
+
+    /**
+     * Play a batch of games on all cores.
+     *
+     * @param games - number of games to play.
+     * @param seed - seed for word choice (and the RANDOM player); the same seed plays the same games.
+     * @return result - merged totals.
+     */
+    public Result run(long games, long seed) {
+        if (this.player == Player.SOLVER){
+            // Build the shared index up front rather than inside the timed run.
+            LetterIndex.of(this.dictionary);
+        }
+        long start = System.nanoTime();
+        Result result = ForkJoinPool.commonPool().invoke(new Batch(games, new SplittableRandom(seed)));
+        result.nanos = System.nanoTime() - start;
+        return result;
+    }
+
+    /**
+     * A range of games, split in half until it is small enough to play directly.
+     */
+    private final class Batch extends RecursiveTask<Result> {
+        private static final long serialVersionUID = 1L;
+
+        private final long games;
+        private final SplittableRandom random;
+
+        Batch(long games, SplittableRandom random) {
+            this.games = games;
+            this.random = random;
+        }
+
+        @Override
+        protected Result compute() {
+            if (this.games <= LEAF_GAMES){
+                return play();
+            }
+            long half = this.games / 2;
+            Batch left = new Batch(half, this.random.split());
+            Batch right = new Batch(this.games - half, this.random);
+            left.fork();
+            Result result = right.compute();
+            result.merge(left.join());
+            return result;
+        }
+
+        private Result play() {
+            Result result = new Result();
+            GameSession session = new GameSession();
+            GuessStrategy strategy = player.create(dictionary, this.random);
+            int size = dictionary.size();
+            long i;
+            for (i=0; i<this.games; i++){
+                String word = dictionary.getWord(this.random.nextInt(size));
+                if (word.isEmpty() || word.length() > GuessEngine.MAX_LENGTH){
+                    result.skipped++;
+                    continue;
+                }
+                session.start(word);
+                int state = strategy.play(session);
+                result.games[word.length()]++;
+                if (state == GameSession.WON){
+                    result.wins[word.length()]++;
+                }
+                result.guesses += session.getGuessCount();
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Player that ignores results: it goes through the letters in a fixed
+     * order, or in random order if it has a random source.
+     */
+    private static final class LetterOrder implements GuessStrategy {
+        private static final String ORDER = "esiarntolcdupmghbyfvkwzxqj";
+        private final SplittableRandom random;
+        private final char[] letters = ORDER.toCharArray();
+        private int next;
+
+        LetterOrder(SplittableRandom random) {
+            this.random = random;
+        }
+
+        @Override
+        public void start(int length) {
+            this.next = 0;
+        }
+
+        @Override
+        public char nextGuess() {
+            if (this.next == this.letters.length){
+                return GuessEngine.BLANK;
+            }
+            if (this.random != null){
+                // One step of a Fisher-Yates shuffle per guess.
+                int pick = this.next + this.random.nextInt(this.letters.length - this.next);
+                char swap = this.letters[pick];
+                this.letters[pick] = this.letters[this.next];
+                this.letters[this.next] = swap;
+            }
+            return this.letters[this.next++];
+        }
+
+        @Override
+        public void update(char letter, long hits) {
+        }
+    }
+}
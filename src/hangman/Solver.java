@@ -0,0 +1,187 @@
+/*
+ * Computer player that narrows down the possible words with bitmaps.
+ */
+package hangman;
+
+/**
+ * Automated Hangman player. It keeps the words that still fit everything seen
+ * so far as a bitset over the LetterIndex group of the right length, and after
+ * each guess it narrows the set with the index's per-position and per-letter
+ * bitmaps. The next guess is the unguessed letter found in the most remaining
+ * words. One solver can play any number of games; it allocates nothing once built.
+ */
+public final class Solver implements GuessStrategy {
+
+    // Order to fall back on when no remaining word helps (e.g. the word isn't in the dictionary).
+    private static final String FALLBACK_ORDER = "esiarntolcdupmghbyfvkwzxqj";
+
+    private final Dictionary dictionary;
+    private final LetterIndex index;
+    private final long[] candidates;
+    private LetterIndex.Group group;
+    private int span;
+    private int guessed;
+    private int remaining;
+
+    /**
+     * Constructor for a solver that plays against a dictionary.
+     *
+     * @param dictionary - the words the secret word comes from.
+     */
+    public Solver(Dictionary dictionary) {
+        this.dictionary = dictionary;
+        this.index = LetterIndex.of(dictionary);
+        int maxSpan = 0;
+        int len;
+        for (len=1; len<=this.index.getMaxLength(); len++){
+            LetterIndex.Group g = this.index.group(len);
+            if (g != null){
+                maxSpan = Math.max(maxSpan, g.span);
+            }
+        }
+        this.candidates = new long[maxSpan];
+    }
+
+    /**
+     * Start a new game: every word of the given length is possible.
+     *
+     * @param length - length of the secret word.
+     */
+    @Override
+    public void start(int length) {
+        this.group = this.index.group(length);
+        this.guessed = 0;
+        this.span = this.group == null ? 0 : this.group.span;
+        this.remaining = this.group == null ? 0 : this.group.size();
+        int i;
+        for (i=0; i<this.span; i++){
+            this.candidates[i] = -1L;
+        }
+        if (this.remaining % 64 != 0){
+            this.candidates[this.span - 1] = (1L << (this.remaining % 64)) - 1;
+        }
+    }
+
+    /**
+     * Pick the next letter to guess.
+     *
+     * @return letter - the unguessed letter in the most remaining words, or
+     * GuessEngine.BLANK if every letter has been guessed.
+     */
+    @Override
+    public char nextGuess() {
+        if (this.group == null){
+            // No dictionary words of this length to go on
+            return GuessEngine.BLANK;
+        }
+        int best = -1;
+        int bestCount = 0;
+        int c;
+        for (c=0; c<26; c++){
+            if ((this.guessed & (1 << c)) != 0){
+                continue;
+            }
+            long[] has = this.group.contains[c];
+            int count = 0;
+            int i;
+            for (i=0; i<this.span; i++){
+                count += Long.bitCount(this.candidates[i] & has[i]);
+            }
+            if (count > bestCount){
+                best = c;
+                bestCount = count;
+            }
+        }
+        if (best >= 0){
+            return (char) ('a' + best);
+        }
+        for (c=0; c<FALLBACK_ORDER.length(); c++){
+            char letter = FALLBACK_ORDER.charAt(c);
+            if ((this.guessed & (1 << (letter - 'a'))) == 0){
+                return letter;
+            }
+        }
+        return GuessEngine.BLANK;
+    }
+
+    /**
+     * Narrow the remaining words using the result of a guess.
+     *
+     * @param letter - the letter guessed.
+     * @param hits - bit mask of the positions it was found at; 0 for a miss.
+     */
+    @Override
+    public void update(char letter, long hits) {
+        int c = letter - 'a';
+        if (c < 0 || c >= 26){
+            return;
+        }
+        this.guessed |= 1 << c;
+        if (this.group == null){
+            return;
+        }
+        int count = 0;
+        int i;
+        if (hits == 0){
+            long[] has = this.group.contains[c];
+            for (i=0; i<this.span; i++){
+                this.candidates[i] &= ~has[i];
+                count += Long.bitCount(this.candidates[i]);
+            }
+        }else{
+            long[][] at = this.group.at;
+            int length = this.group.length;
+            for (i=0; i<this.span; i++){
+                long m = this.candidates[i];
+                if (m == 0){
+                    continue;
+                }
+                // Keep words with the letter exactly at the hit positions and nowhere else.
+                int pos;
+                for (pos=0; pos<length && m != 0; pos++){
+                    long bits = at[pos * 26 + c][i];
+                    m &= ((hits >>> pos) & 1) != 0 ? bits : ~bits;
+                }
+                this.candidates[i] = m;
+                count += Long.bitCount(m);
+            }
+        }
+        this.remaining = count;
+    }
+
+    /**
+     * @return remaining - number of dictionary words that still fit.
+     */
+    public int getCandidateCount() {
+        return remaining;
+    }
+
+    /**
+     * Get one of the words that still fit.
+     *
+     * @param n - which remaining word, from 0 to getCandidateCount()-1.
+     * @return index - the word's position in the dictionary.
+     */
+    public int getCandidate(int n) {
+        int i;
+        for (i=0; i<this.span; i++){
+            int bits = Long.bitCount(this.candidates[i]);
+            if (n < bits){
+                long m = this.candidates[i];
+                while (n-- > 0){
+                    m &= m - 1;
+                }
+                return this.group.words[(i << 6) + Long.numberOfTrailingZeros(m)];
+            }
+            n -= bits;
+        }
+        throw new IndexOutOfBoundsException("No remaining word " + n);
+    }
+
+    /**
+     * @return dictionary - the words the solver plays against.
+     */
+    public Dictionary getDictionary() {
+        return dictionary;
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Picks random words from a word list in one pass, without loading it.
+ */
+package hangman;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reservoir sampling straight off a word list's stream, for lists too big to
+ * hold or only available as a stream. One pass picks k lines uniformly at
+ * random in O(k) memory; gzip-compressed lists are recognised by their magic
+ * bytes and decompressed on the fly.
+ * <p>
+ * It uses Li's "Algorithm L": after the reservoir is full, the number of
+ * lines to skip before the next replacement is drawn directly, so random
+ * numbers are only needed for the few lines that are kept. Skipped lines are
+ * just counted by looking for newline bytes in a large buffer; only kept
+ * lines are decoded into Strings. Lines are split like
+ * BufferedReader.readLine(), with a trailing carriage return removed.
+ */
+public final class StreamingSampler {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private StreamingSampler() {
+    }
+
+    /**
+     * Pick one line of a word list, each equally likely.
+     *
+     * @param path - location of the word list, plain or gzip-compressed.
+     * @return word - the chosen line.
+     * @throws IOException if the list can't be read or is empty.
+     * @throws NullPointerException if path is null.
+     */
+    public static String sample(URL path) throws IOException, NullPointerException {
+        String[] words = sample(path, 1, ThreadLocalRandom.current());
+        if (words.length == 0){
+            throw new IOException("Word list is empty: " + path);
+        }
+        return words[0];
+    }
+
+    /**
+     * Pick k different lines of a word list, every set of k equally likely,
+     * in random order.
+     *
+     * @param path - location of the word list, plain or gzip-compressed.
+     * @param k - number of lines wanted.
+     * @param random - source of randomness.
+     * @return words - the chosen lines; fewer than k if the list is shorter.
+     * @throws IOException if the list can't be read.
+     * @throws NullPointerException if path is null.
+     */
+    public static String[] sample(URL path, int k, Random random) throws IOException, NullPointerException {
+        if (k < 0){
+            throw new IllegalArgumentException("Negative sample size " + k);
+        }
+        try (InputStream in = open(path)) {
+            return sample(in, k, random);
+        }
+    }
+
+    /**
+     * Pick k different lines of a stream, every set of k equally likely, in
+     * random order. The stream is read to the end (or until it is clear no
+     * more lines can be chosen) but not closed.
+     *
+     * @param in - newline-separated lines.
+     * @param k - number of lines wanted.
+     * @param random - source of randomness.
+     * @return words - the chosen lines; fewer than k if there are fewer lines.
+     * @throws IOException if reading fails.
+     */
+    public static String[] sample(InputStream in, int k, Random random) throws IOException {
+        String[] reservoir = new String[k];
+        if (k == 0){
+            return reservoir;
+        }
+        LineScanner lines = new LineScanner(in);
+        int filled = 0;
+        String line;
+        while (filled < k && (line = lines.next()) != null){
+            reservoir[filled++] = line;
+        }
+        if (filled < k){
+            reservoir = Arrays.copyOf(reservoir, filled);
+        }else{
+            double w = Math.exp(Math.log(nextOpen(random)) / k);
+            while (lines.skip(skipCount(random, w))){
+                line = lines.next();
+                if (line == null){
+                    break;
+                }
+                reservoir[random.nextInt(k)] = line;
+                w *= Math.exp(Math.log(nextOpen(random)) / k);
+            }
+        }
+        // The reservoir's order depends on when lines came in; shuffle it.
+        int i;
+        for (i=reservoir.length - 1; i>0; i--){
+            int j = random.nextInt(i + 1);
+            String t = reservoir[i];
+            reservoir[i] = reservoir[j];
+            reservoir[j] = t;
+        }
+        return reservoir;
+    }
+
+    // Lines to pass over before the next one that goes in the reservoir.
+    private static long skipCount(Random random, double w) {
+        double skip = Math.floor(Math.log(nextOpen(random)) / Math.log1p(-w));
+        return skip >= Long.MAX_VALUE || Double.isNaN(skip) ? Long.MAX_VALUE : (long) skip;
+    }
+
+    // Uniform in (0, 1), so its log is finite.
+    private static double nextOpen(Random random) {
+        double u;
+        do{
+            u = random.nextDouble();
+        }while(u == 0.0);
+        return u;
+    }
+
+    /**
+     * Open a word list, decompressing it if it starts with the gzip magic bytes.
+     *
+     * @param path - location of the word list.
+     * @return in - the list's lines.
+     * @throws IOException if it can't be opened.
+     * @throws NullPointerException if path is null.
+     */
+    static InputStream open(URL path) throws IOException, NullPointerException {
+        PushbackInputStream in = new PushbackInputStream(Metrics.counting(path.openStream()), 2);
+        try {
+            byte[] magic = new byte[2];
+            int n = 0;
+            int r;
+            while (n < 2 && (r = in.read(magic, n, 2 - n)) > 0){
+                n += r;
+            }
+            in.unread(magic, 0, Math.max(0, n));
+            if (n == 2 && (magic[0] & 0xff) == 0x1f && (magic[1] & 0xff) == 0x8b){
+                return new GZIPInputStream(in, BUFFER_SIZE);
+            }
+            return in;
+        } catch (IOException|RuntimeException ex) {
+            in.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Splits a stream into lines at the byte level. Skipping only counts
+     * newlines; reading a line decodes just that line.
+     */
+    private static final class LineScanner {
+        private final InputStream in;
+        private final byte[] buf = new byte[BUFFER_SIZE];
+        private int pos;
+        private int limit;
+        private boolean eof;
+        // Bytes of a line that runs past the end of the buffer
+        private byte[] line = new byte[256];
+
+        LineScanner(InputStream in) {
+            this.in = in;
+        }
+
+        // Refill the buffer; false at the end of the stream.
+        private boolean fill() throws IOException {
+            if (this.eof){
+                return false;
+            }
+            int n = this.in.read(this.buf);
+            if (n <= 0){
+                this.eof = true;
+                return false;
+            }
+            this.pos = 0;
+            this.limit = n;
+            return true;
+        }
+
+        /**
+         * Pass over lines without decoding them.
+         *
+         * @param count - lines to skip.
+         * @return more - false if the stream ended first.
+         */
+        boolean skip(long count) throws IOException {
+            while (count > 0){
+                if (this.pos == this.limit && !fill()){
+                    return false;
+                }
+                byte[] b = this.buf;
+                int i = this.pos;
+                int end = this.limit;
+                while (i < end && b[i] != '\n'){
+                    i++;
+                }
+                if (i < end){
+                    count--;
+                    this.pos = i + 1;
+                }else{
+                    this.pos = end;
+                    if (!fill()){
+                        // Even if this was an unterminated last line, there is nothing after it.
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Read the next line.
+         *
+         * @return line - the line without its line ending, or null at the end of the stream.
+         */
+        String next() throws IOException {
+            if (this.pos == this.limit && !fill()){
+                return null;
+            }
+            int length = 0;
+            while (true){
+                byte[] b = this.buf;
+                int start = this.pos;
+                int i = start;
+                int end = this.limit;
+                while (i < end && b[i] != '\n'){
+                    i++;
+                }
+                if (length == 0 && i < end){
+                    // The usual case: the whole line is in the buffer.
+                    this.pos = i + 1;
+                    return decode(b, start, i);
+                }
+                if (length + (i - start) > this.line.length){
+                    this.line = Arrays.copyOf(this.line, Math.max(this.line.length * 2, length + (i - start)));
+                }
+                System.arraycopy(b, start, this.line, length, i - start);
+                length += i - start;
+                if (i < end){
+                    this.pos = i + 1;
+                    break;
+                }
+                this.pos = end;
+                if (!fill()){
+                    break;
+                }
+            }
+            return decode(this.line, 0, length);
+        }
+
+        private static String decode(byte[] b, int from, int to) {
+            if (to > from && b[to - 1] == '\r'){
+                to--;
+            }
+            return new String(b, from, to - from, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,407 @@
+/*
+ * Index of a dictionary by word length and difficulty, for picking words to a constraint.
+ */
+package hangman;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+/**
+ * Secondary index that sorts a dictionary's words into buckets by length and
+ * by difficulty band. Each word gets a difficulty score (rarer letters, fewer
+ * distinct letters and fewer repeats are harder), and within each length the
+ * easiest third is EASY, the next MEDIUM and the rest HARD. Word numbers are
+ * kept in two arrays, one ordered by length and one by band then length, so
+ * any length range, with or without a band, is one contiguous slice and a
+ * word can be picked from it in O(1).
+ * <p>
+ * Scoring runs in parallel. The build saves the bands of the bundled list
+ * to a cache file next to it (the extension changed to .idx), so startup
+ * only has to read them back; the game reads such a file but never writes
+ * one. The cache is only used if every word matches:
+ * <pre>
+ *   int    magic "HNGX"
+ *   int    version
+ *   int    word count
+ *   long   CRC32 of every word, in order
+ *   bytes  band of each word (0 easy, 1 medium, 2 hard)
+ *   long   CRC32 of everything before it
+ * </pre>
+ */
+public final class WordBuckets {
+
+    /** File extension of the cache file. */
+    public static final String EXTENSION = ".idx";
+
+    private static final int MAGIC = 0x484E4758;
+    private static final int VERSION = 2;
+    // Lengths 1 to MAX_LENGTH have buckets; anything longer goes in one more that is never picked from
+    private static final int LENGTHS = GuessEngine.MAX_LENGTH + 2;
+
+    /**
+     * How hard a word is to guess, relative to other words of its length.
+     */
+    public enum Difficulty {
+        EASY, MEDIUM, HARD
+    }
+
+    private final Dictionary dictionary;
+    private final byte[] bands;
+    // Word numbers ordered by length, and by band then length
+    private final int[] byLength;
+    private final int[] byBand;
+    // byLength[lengthStart[len]] is the first word of that length; lengthStart[LENGTHS] is the end
+    private final int[] lengthStart;
+    // Likewise for byBand, with LENGTHS + 1 entries per band
+    private final int[] bandStart;
+
+    private WordBuckets(Dictionary dictionary, byte[] bands) {
+        this.dictionary = dictionary;
+        this.bands = bands;
+        int n = dictionary.size();
+        int[] lengths = new int[n];
+        IntStream.range(0, n).parallel().forEach(i -> lengths[i] = Math.min(dictionary.getLength(i), LENGTHS - 1));
+        int[] lengthCounts = new int[LENGTHS + 1];
+        int[] bandCounts = new int[3 * (LENGTHS + 1)];
+        int i;
+        for (i=0; i<n; i++){
+            lengthCounts[lengths[i] + 1]++;
+            bandCounts[bands[i] * (LENGTHS + 1) + lengths[i] + 1]++;
+        }
+        for (i=1; i<lengthCounts.length; i++){
+            lengthCounts[i] += lengthCounts[i - 1];
+        }
+        for (i=1; i<bandCounts.length; i++){
+            bandCounts[i] += bandCounts[i - 1];
+        }
+        this.lengthStart = lengthCounts.clone();
+        this.bandStart = bandCounts.clone();
+        // Counting sort: the counts become the next free slot of each bucket.
+        this.byLength = new int[n];
+        this.byBand = new int[n];
+        for (i=0; i<n; i++){
+            this.byLength[lengthCounts[lengths[i]]++] = i;
+            this.byBand[bandCounts[bands[i] * (LENGTHS + 1) + lengths[i]]++] = i;
+        }
+    }
+
+    /**
+     * A contiguous run of words in one length range and band, usable as a
+     * Dictionary of its own (so any WordSelector can pick from it).
+     */
+    public static final class Range implements Dictionary {
+        private final Dictionary dictionary;
+        private final int[] order;
+        private final int from;
+        private final int size;
+
+        Range(Dictionary dictionary, int[] order, int from, int to) {
+            this.dictionary = dictionary;
+            this.order = order;
+            this.from = from;
+            this.size = to - from;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public String getWord(int index) {
+            return dictionary.getWord(getIndex(index));
+        }
+
+        @Override
+        public int getLength(int index) {
+            return dictionary.getLength(getIndex(index));
+        }
+
+        @Override
+        public char getLetter(int index, int pos) {
+            return dictionary.getLetter(getIndex(index), pos);
+        }
+
+        /**
+         * Get the position in the whole dictionary of a word in the range.
+         *
+         * @param index - the word's position in the range.
+         * @return index - its position in the dictionary.
+         */
+        public int getIndex(int index) {
+            if (index < 0 || index >= size){
+                throw new IndexOutOfBoundsException("Index " + index + " outside range of " + size);
+            }
+            return order[from + index];
+        }
+    }
+
+    /**
+     * Index a dictionary, reading the bands from the cache file next to its
+     * word list if that matches. If it doesn't, the words are scored; no
+     * cache is written, as only the build makes those.
+     *
+     * @param dictionary - the words to index.
+     * @param path - location of the word list, or null if there is none.
+     * @return buckets - the index.
+     */
+    public static WordBuckets load(Dictionary dictionary, URL path) {
+        if (path != null){
+            try (InputStream in = cachePathFor(path).openStream()) {
+                return read(dictionary, in);
+            } catch (IOException ex) {
+                // No usable cache; score the words below.
+            }
+        }
+        return build(dictionary);
+    }
+
+    /**
+     * Index a dictionary by scoring every word.
+     *
+     * @param dictionary - the words to index.
+     * @return buckets - the index.
+     */
+    public static WordBuckets build(Dictionary dictionary) {
+        int n = dictionary.size();
+        // Letters in each word, then how many words have each letter
+        int[] masks = new int[n];
+        IntStream.range(0, n).parallel().forEach(i -> masks[i] = letterMask(dictionary, i));
+        int[] have = new int[26];
+        for (int mask : masks){
+            while (mask != 0){
+                have[Integer.numberOfTrailingZeros(mask)]++;
+                mask &= mask - 1;
+            }
+        }
+        double[] rarity = new double[26];
+        int c;
+        for (c=0; c<26; c++){
+            rarity[c] = 1.0 - (double) have[c] / Math.max(1, n);
+        }
+        // Sort by length, then score, then word number, all packed in one long.
+        long[] keys = new long[n];
+        IntStream.range(0, n).parallel().forEach(i -> {
+            long length = Math.min(dictionary.getLength(i), LENGTHS - 1);
+            long score = (long) Math.max(0, Math.min((1 << 24) - 1, (score(dictionary, i, masks[i], rarity) + 100) * 10000));
+            keys[i] = length << 56 | score << 32 | i;
+        });
+        Arrays.parallelSort(keys);
+        byte[] bands = new byte[n];
+        int start = 0;
+        while (start < n){
+            long length = keys[start] >>> 56;
+            int end = start;
+            while (end < n && keys[end] >>> 56 == length){
+                end++;
+            }
+            int i;
+            for (i=start; i<end; i++){
+                bands[(int) keys[i]] = (byte) ((long) (i - start) * 3 / (end - start));
+            }
+            start = end;
+        }
+        return new WordBuckets(dictionary, bands);
+    }
+
+    private static int letterMask(Dictionary dictionary, int index) {
+        int mask = 0;
+        int length = dictionary.getLength(index);
+        int pos;
+        for (pos=0; pos<length; pos++){
+            int c = dictionary.getLetter(index, pos) - 'a';
+            if (c >= 0 && c < 26){
+                mask |= 1 << c;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Difficulty of one word: higher is harder. Rare letters are hard to
+     * think of; every distinct letter is another chance of a hit, and a
+     * repeated letter fills in more than one blank for one guess.
+     */
+    private static double score(Dictionary dictionary, int index, int mask, double[] rarity) {
+        int distinct = Integer.bitCount(mask);
+        if (distinct == 0){
+            return 0;
+        }
+        double rare = 0;
+        int m = mask;
+        while (m != 0){
+            rare += rarity[Integer.numberOfTrailingZeros(m)];
+            m &= m - 1;
+        }
+        int letters = 0;
+        int length = dictionary.getLength(index);
+        int pos;
+        for (pos=0; pos<length; pos++){
+            char c = dictionary.getLetter(index, pos);
+            if (c >= 'a' && c <= 'z'){
+                letters++;
+            }
+        }
+        return 10.0 * rare / distinct - 0.5 * distinct - 0.5 * (letters - distinct);
+    }
+
+    /**
+     * Find the cache file of a word list: the same location with the
+     * extension changed to .idx.
+     *
+     * @param textPath - location of the word list.
+     * @return cachePath - where the cache would be.
+     * @throws MalformedURLException if the new URL can't be built.
+     */
+    public static URL cachePathFor(URL textPath) throws MalformedURLException {
+        String name = textPath.toExternalForm();
+        int dot = name.lastIndexOf('.');
+        if (dot > name.lastIndexOf('/')){
+            name = name.substring(0, dot);
+        }
+        return new URL(name + EXTENSION);
+    }
+
+    /**
+     * Read an index saved by write().
+     *
+     * @param dictionary - the dictionary it was built from.
+     * @param in - stream to read.
+     * @return buckets - the index.
+     * @throws IOException if the data is corrupt, the wrong version or for another dictionary.
+     */
+    public static WordBuckets read(Dictionary dictionary, InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        CRC32 crc = new CRC32();
+        byte[] header = new byte[20];
+        data.readFully(header);
+        crc.update(header);
+        DataInputStream head = new DataInputStream(new ByteArrayInputStream(header));
+        if (head.readInt() != MAGIC){
+            throw new IOException("Not a word bucket index");
+        }
+        int version = head.readInt();
+        if (version != VERSION){
+            throw new IOException("Unsupported word bucket index version " + version);
+        }
+        int count = head.readInt();
+        if (count != dictionary.size() || head.readLong() != fingerprint(dictionary)){
+            throw new IOException("Word bucket index is for a different dictionary");
+        }
+        byte[] bands = new byte[count];
+        data.readFully(bands);
+        crc.update(bands);
+        if (data.readLong() != crc.getValue()){
+            throw new IOException("Word bucket index is corrupt");
+        }
+        for (byte band : bands){
+            if (band < 0 || band > 2){
+                throw new IOException("Word bucket index is corrupt");
+            }
+        }
+        return new WordBuckets(dictionary, bands);
+    }
+
+    /**
+     * Save the bands so a later read() can skip scoring.
+     *
+     * @param out - stream to write to; it is not closed.
+     * @throws IOException if writing fails.
+     */
+    public void write(OutputStream out) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(20 + bands.length);
+        DataOutputStream data = new DataOutputStream(bytes);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(bands.length);
+        data.writeLong(fingerprint(dictionary));
+        data.write(bands);
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        data.writeLong(crc.getValue());
+        BufferedOutputStream buffered = new BufferedOutputStream(out);
+        bytes.writeTo(buffered);
+        buffered.flush();
+    }
+
+    // Check that a cache belongs to this dictionary: a CRC32 over each word's length and UTF-16 letters.
+    private static long fingerprint(Dictionary dictionary) {
+        CRC32 crc = new CRC32();
+        byte[] buf = new byte[1 << 13];
+        int used = 0;
+        int n = dictionary.size();
+        int i;
+        for (i=0; i<n; i++){
+            int length = dictionary.getLength(i);
+            int pos;
+            for (pos=-1; pos<length; pos++){
+                if (used + 4 > buf.length){
+                    crc.update(buf, 0, used);
+                    used = 0;
+                }
+                if (pos < 0){
+                    buf[used++] = (byte) (length >>> 24);
+                    buf[used++] = (byte) (length >>> 16);
+                    buf[used++] = (byte) (length >>> 8);
+                    buf[used++] = (byte) length;
+                }else{
+                    char c = dictionary.getLetter(i, pos);
+                    buf[used++] = (byte) (c >>> 8);
+                    buf[used++] = (byte) c;
+                }
+            }
+        }
+        crc.update(buf, 0, used);
+        return crc.getValue();
+    }
+
+    /**
+     * Get the words in a length range, optionally in one band.
+     *
+     * @param minLength - shortest length wanted.
+     * @param maxLength - longest length wanted.
+     * @param band - difficulty wanted, or null for any.
+     * @return range - the matching words; may be empty.
+     */
+    public Range range(int minLength, int maxLength, Difficulty band) {
+        int min = Math.max(1, minLength);
+        int max = Math.min(GuessEngine.MAX_LENGTH, maxLength);
+        if (min > max){
+            return new Range(dictionary, byLength, 0, 0);
+        }
+        if (band == null){
+            return new Range(dictionary, byLength, lengthStart[min], lengthStart[max + 1]);
+        }
+        int base = band.ordinal() * (LENGTHS + 1);
+        return new Range(dictionary, byBand, bandStart[base + min], bandStart[base + max + 1]);
+    }
+
+    /**
+     * Get the band of one word.
+     *
+     * @param index - the word's position in the dictionary.
+     * @return band - its difficulty.
+     */
+    public Difficulty getDifficulty(int index) {
+        return Difficulty.values()[bands[index]];
+    }
+
+    /**
+     * @return dictionary - the indexed words.
+     */
+    public Dictionary getDictionary() {
+        return dictionary;
+    }
+}
@@ -4,11 +4,13 @@
  */
 package hangman;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.net.*;
-import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  *
@@ -18,7 +20,67 @@ import java.util.Random;
 public class WordList {
     
     private URL path;
-    private int numLines;
+    private final DictionaryFormat format;
+    // Written by whichever thread loads or reloads the dictionary, read by game threads
+    private volatile int numLines;
+    // Dictionary for the current path and its index, looked up once and then reused; replaced whole when the file is reloaded
+    private final AtomicReference<Loaded> loaded = new AtomicReference<>();
+    // How the next word is chosen
+    private WordSelector selector = WordSelector.uniform();
+    // Reloads the dictionary when the file changes, once watch() has been called
+    private WordListWatcher watcher;
+    // Background load started by preload(); null once someone has waited for it
+    private volatile CompletableFuture<WordBuckets> preload;
+
+    /**
+     * A dictionary and its length and difficulty index, published together
+     * so readers never pair one with the other's replacement.
+     */
+    private static final class Loaded {
+        final Dictionary dictionary;
+        // Built the first time a constrained word is wanted, or by the reload that made dictionary
+        final WordBuckets buckets;
+
+        Loaded(Dictionary dictionary, WordBuckets buckets) {
+            this.dictionary = dictionary;
+            this.buckets = buckets;
+        }
+    }
+
+    /**
+     * A chosen word together with the dictionary its index refers to, so the
+     * index stays right even if the word list is reloaded afterwards.
+     */
+    public static final class Selection {
+        private final Dictionary dictionary;
+        private final int index;
+
+        Selection(Dictionary dictionary, int index) {
+            this.dictionary = dictionary;
+            this.index = index;
+        }
+
+        /**
+         * @return dictionary - the dictionary the word was chosen from.
+         */
+        public Dictionary getDictionary() {
+            return dictionary;
+        }
+
+        /**
+         * @return index - position of the word in getDictionary().
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * @return word - the chosen word.
+         */
+        public String getWord() {
+            return dictionary.getWord(index);
+        }
+    }
 
     /**
      * Constructor taking a path to a file.
@@ -26,8 +88,19 @@ public class WordList {
      * @param filepath - path to file.
      */
     public WordList(URL filepath) {
+        this(filepath, DictionaryFormat.defaultFormat());
+    }
+
+    /**
+     * Constructor taking a path to a file and the way its words should be held in memory.
+     *
+     * @param filepath - path to file.
+     * @param format - dictionary backend to load the file with.
+     */
+    public WordList(URL filepath, DictionaryFormat format) {
         this.path = filepath;
-    } 
+        this.format = format;
+    }
 
     /**
      * Get the path of the file used by the WordList.
@@ -38,13 +111,43 @@ public class WordList {
         return path;
     }
 
+    /**
+     * Get the dictionary backend used by the WordList.
+     *
+     * @return format - dictionary backend.
+     */
+    public DictionaryFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Get the strategy used to choose words.
+     *
+     * @return selector - how the next word is chosen.
+     */
+    public WordSelector getSelector() {
+        return selector;
+    }
+
+    /**
+     * Set the strategy used to choose words, e.g. a seeded one for a
+     * repeatable run or a shuffle bag so words don't repeat.
+     *
+     * @param selector - how the next word should be chosen.
+     */
+    public void setSelector(WordSelector selector) {
+        this.selector = selector;
+    }
+
     /**
      * Set the path.
      *
      * @param filepath - path to file.
      */
     public void setPath(URL filepath) {
+        unwatch();
         this.path = filepath;
+        this.loaded.set(null);
     }
 
     /**
@@ -66,59 +169,286 @@ public class WordList {
     }
     
     /**
-     * Get an array of all the words (lines) in the file.
+     * Get the shared dictionary for this word list. The file is only read the
+     * first time any WordList asks for it; later calls just look it up.
      *
-     * @return words - array of words.
+     * @return dictionary - the loaded words, or a small built-in list if the file can't be read.
      */
-    public String[] getWords(){
-        try{
-            this.numLines = countLines();
-            String[] words = new String[this.numLines];
-        
-            try (BufferedReader read = new BufferedReader(new InputStreamReader(path.openStream()))) {
-                int i;
-                for (i=0; i<this.numLines; i++) {
-                    words[i] = read.readLine();
+    public Dictionary getDictionary(){
+        awaitPreload();
+        return loadDictionary().dictionary;
+    }
+
+    private Loaded loadDictionary(){
+        Loaded current = this.loaded.get();
+        if (current == null){
+            Dictionary dictionary;
+            try{
+                dictionary = Dictionaries.get(this.path, this.format);
+            }catch(IOException|NullPointerException ex){
+                // If we can't get the wordlist from a file, use a small one so the game will still work.
+                dictionary = Dictionaries.fallback();
+            }
+            this.numLines = dictionary.size();
+            // A reload that got in first wins
+            this.loaded.compareAndSet(null, new Loaded(dictionary, null));
+            current = this.loaded.get();
+        }
+        return current;
+    }
+
+    /**
+     * Start loading the dictionary and its bucket index on a background
+     * thread, so the work overlaps with whatever the caller does next (e.g.
+     * opening the window). Whichever of getDictionary() and getBuckets() is
+     * called first waits for the load to finish instead of starting another.
+     *
+     * @return ready - completes with the bucket index once everything is loaded.
+     */
+    public synchronized CompletableFuture<WordBuckets> preload() {
+        if (this.preload != null){
+            return this.preload;
+        }
+        Loaded current = this.loaded.get();
+        if (current != null && current.buckets != null){
+            return CompletableFuture.completedFuture(current.buckets);
+        }
+        CompletableFuture<WordBuckets> ready = new CompletableFuture<>();
+        long start = System.nanoTime();
+        Thread loader = new Thread(() -> {
+            try{
+                WordBuckets loaded = loadBuckets();
+                if (Metrics.ENABLED){
+                    Metrics.PRELOAD.since(start);
                 }
+                ready.complete(loaded);
+            }catch(RuntimeException|Error ex){
+                ready.completeExceptionally(ex);
+            }
+        }, "hangman-preload");
+        loader.setDaemon(true);
+        this.preload = ready;
+        loader.start();
+        return ready;
+    }
+
+    // Let the first caller after preload() wait for it, and record how long it waited.
+    private void awaitPreload() {
+        CompletableFuture<WordBuckets> ready = this.preload;
+        if (ready == null){
+            return;
+        }
+        long start = System.nanoTime();
+        try{
+            ready.join();
+        }catch(CompletionException ex){
+            // Loading again on this thread will hit the same problem and report it.
+        }
+        if (Metrics.ENABLED){
+            Metrics.PRELOAD_WAIT.since(start);
+        }
+        this.preload = null;
+    }
+
+    /**
+     * Watch the word list file and reload the dictionary in the background
+     * whenever it changes. Games already started keep their word; words
+     * picked after the reload come from the new list. Only works for word
+     * lists in files, and not with DictionaryFormat.MAPPED.
+     *
+     * @param debounceMillis - how long the file must be unchanged before it is reloaded.
+     * @throws IOException if the file can't be watched, or the list is mapped.
+     */
+    public synchronized void watch(long debounceMillis) throws IOException {
+        if (this.watcher == null){
+            // The watcher takes the dictionary loaded now to match the file as it is now.
+            getDictionary();
+            this.watcher = new WordListWatcher(this, debounceMillis);
+        }
+    }
+
+    /**
+     * Stop watching the word list file.
+     */
+    public synchronized void unwatch() {
+        if (this.watcher != null){
+            this.watcher.close();
+            this.watcher = null;
+        }
+    }
+
+    /**
+     * Replace the dictionary with a reloaded one. Its index is built on the
+     * calling thread (the watcher's), then both are published in a single
+     * write, so game threads never wait for the index or see a half swap.
+     *
+     * @param next - the new words.
+     */
+    void swap(Dictionary next) {
+        WordBuckets index = WordBuckets.load(next, next == Dictionaries.fallback() ? null : this.path);
+        this.numLines = next.size();
+        this.loaded.set(new Loaded(next, index));
+    }
+
+    /**
+     * Get the length and difficulty index of the dictionary, reading it from
+     * the cache next to the word list or building it the first time.
+     *
+     * @return buckets - the index.
+     */
+    public WordBuckets getBuckets() {
+        awaitPreload();
+        return loadBuckets();
+    }
+
+    private WordBuckets loadBuckets() {
+        while (true){
+            Loaded current = loadDictionary();
+            if (current.buckets != null){
+                return current.buckets;
+            }
+            Dictionary dictionary = current.dictionary;
+            WordBuckets index = WordBuckets.load(dictionary, dictionary == Dictionaries.fallback() ? null : this.path);
+            if (this.loaded.compareAndSet(current, new Loaded(dictionary, index))){
+                return index;
             }
-            return words;
-        }catch(IOException|NullPointerException ex){
-            // If we can't get the wordlist from a file, make up a small one so the game will still work.
-            String[] words = new String[]{"hello","rectangle","megaphone","computer","ankles",
-                                          "random","superior","eight","twelve","freakish"};
-            this.numLines = 10;
-            return words;
+            // Reloaded meanwhile; use the new state, which normally has its index already
         }
     }
+
+    /**
+     * Get an array of all the words (lines) in the file.
+     *
+     * @return words - array of words.
+     */
+    public String[] getWords(){
+        return getDictionary().toArray();
+    }
    
     /**
-     * Find out how many lines/words are in the file.
+     * Find out how many lines/words are in the file. The file itself is
+     * read, whatever dictionary is loaded from it, counting newlines in
+     * bulk rather than decoding each line.
      *
      * @return lineCount - number of lines.
      * @throws IOException
      * @throws NullPointerException
      */
     public int countLines() throws IOException, NullPointerException {        
-        int lineCount;
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(path.openStream()))) {
-            lineCount = 0;
-            while (br.readLine() != null){
-                lineCount++;
+        int lineCount = 0;
+        byte last = '\n';
+        byte[] buf = new byte[1 << 16];
+        try (InputStream in = path.openStream()) {
+            int n;
+            while ((n = in.read(buf)) > 0){
+                int i;
+                for (i=0; i<n; i++){
+                    if (buf[i] == '\n'){
+                        lineCount++;
+                    }
+                }
+                last = buf[n - 1];
             }
         }
+        // A last line with no newline after it still counts
+        if (last != '\n'){
+            lineCount++;
+        }
         return lineCount;
     }
     
     /**
-     * Get a random word from the array of words.
+     * Pick a random word straight from the file in one pass, without loading
+     * the dictionary. For lists too big to keep in memory, or gzip-compressed ones.
+     *
+     * @return word - random line of the file.
+     * @throws IOException if the file can't be read or is empty.
+     * @throws NullPointerException if the path is null.
+     */
+    public String streamWord() throws IOException, NullPointerException {
+        return StreamingSampler.sample(this.path);
+    }
+
+    /**
+     * Pick k different random words straight from the file in one pass,
+     * e.g. the secret words for a batch of games.
      *
-     * @return words[i] - random word.
+     * @param k - number of words wanted.
+     * @return words - random lines of the file, in random order; fewer than k if the file is shorter.
+     * @throws IOException if the file can't be read.
+     * @throws NullPointerException if the path is null.
+     */
+    public String[] streamWords(int k) throws IOException, NullPointerException {
+        return StreamingSampler.sample(this.path, k, ThreadLocalRandom.current());
+    }
+
+    /**
+     * Pick a random word, with its position in the dictionary it came from,
+     * for callers that record which word was played.
+     *
+     * @return selection - the word, its index and its dictionary.
+     */
+    public Selection select() {
+        Dictionary dictionary = getDictionary();
+        return new Selection(dictionary, this.selector.next(dictionary));
+    }
+
+    /**
+     * Get a word from the dictionary, chosen by the selector. Picking is
+     * O(1) and allocation-free, but a packed dictionary builds the String
+     * it returns (about 90 bytes); select().getIndex() with the dictionary's
+     * getLength() and getLetter() reads the word without one.
+     *
+     * @return word - random word.
      */
     public String selectWord() {
-         
-        String[] words = getWords();  
-        Random rng = new Random();
-        int i = rng.nextInt(words.length);
-        return words[i];
+        if (!Metrics.ENABLED){
+            Dictionary dict = getDictionary();
+            return dict.getWord(this.selector.next(dict));
+        }
+        long start = System.nanoTime();
+        Dictionary dict = getDictionary();
+        String word = dict.getWord(this.selector.next(dict));
+        Metrics.SELECT_WORD.since(start);
+        return word;
+    }
+
+    /**
+     * Pick a word of a given length range and difficulty, with its position
+     * in the dictionary it came from. The choice is made by the selector
+     * from just the matching words, in constant time.
+     *
+     * @param minLength - shortest length wanted.
+     * @param maxLength - longest length wanted.
+     * @param band - difficulty wanted, or null for any.
+     * @return selection - the word, its index and its dictionary.
+     * @throws IllegalArgumentException if no word matches.
+     */
+    public Selection select(int minLength, int maxLength, WordBuckets.Difficulty band) throws IllegalArgumentException {
+        WordBuckets buckets = getBuckets();
+        WordBuckets.Range range = buckets.range(minLength, maxLength, band);
+        if (range.size() == 0){
+            throw new IllegalArgumentException("No " + (band == null ? "" : band.name().toLowerCase() + " ")
+                    + "words of " + minLength + " to " + maxLength + " letters");
+        }
+        return new Selection(buckets.getDictionary(), range.getIndex(this.selector.next(range)));
+    }
+
+    /**
+     * Get a word of a given length range and difficulty, chosen by the selector.
+     *
+     * @param minLength - shortest length wanted.
+     * @param maxLength - longest length wanted.
+     * @param band - difficulty wanted, or null for any.
+     * @return word - random matching word.
+     * @throws IllegalArgumentException if no word matches.
+     */
+    public String selectWord(int minLength, int maxLength, WordBuckets.Difficulty band) throws IllegalArgumentException {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        String word = select(minLength, maxLength, band).getWord();
+        if (Metrics.ENABLED){
+            Metrics.SELECT_WORD.since(start);
+        }
+        return word;
     }
 }
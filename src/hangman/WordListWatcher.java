@@ -0,0 +1,247 @@
+/*
+ * Reloads a WordList's dictionary in the background when its file changes.
+ */
+package hangman;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Watches a word list file and, when it changes, builds the new dictionary
+ * and its length and difficulty index on a background thread and hands
+ * both to the WordList in one reference swap. Games already running keep their word; the next word comes from the
+ * new list. Readers never wait: until the swap they simply see the old one.
+ * <p>
+ * Events are debounced: a reload runs only once the file has been quiet for
+ * the debounce time, so an editor saving in several writes causes one
+ * reload. If the file has only grown and the bytes just before the old end
+ * are unchanged, only the appended lines are parsed and added to the old
+ * words (for packed and text dictionaries); anything else is a full reload.
+ * <p>
+ * Mapped word lists can't be watched: their words are read from the file
+ * itself, so a game using them would see an edit half-made, or crash on a
+ * file cut short.
+ */
+final class WordListWatcher implements Closeable {
+
+    // Bytes before the old end of file that must be unchanged for an append
+    private static final int TAIL = 4096;
+
+    private final WordList words;
+    private final URL url;
+    private final Path file;
+    private final long debounceMillis;
+    private final WatchService service;
+    private final Thread thread;
+    // Runs the reloads, one at a time
+    private final ScheduledExecutorService reloader;
+    // Reload waiting for the file to go quiet. Guarded by this.
+    private ScheduledFuture<?> pending;
+    private volatile boolean closed;
+
+    // The file as the current dictionary was built from it; only the reloader uses these
+    private long loadedSize;
+    private long loadedTail;
+    private boolean loadedEndsLine;
+
+    private volatile int reloads;
+    private volatile int appends;
+
+    /**
+     * Start watching a word list's file. The WordList's current dictionary
+     * is taken to match the file as it is now.
+     *
+     * @param words - the word list to keep up to date.
+     * @param debounceMillis - how long the file must be quiet before reloading.
+     * @throws IOException if the word list isn't a file, is mapped, or can't be watched.
+     */
+    WordListWatcher(WordList words, long debounceMillis) throws IOException {
+        this.words = words;
+        this.url = words.getPath();
+        if (this.url == null || !"file".equals(this.url.getProtocol())){
+            throw new IOException("Only word lists in files can be watched: " + this.url);
+        }
+        if (words.getFormat() == DictionaryFormat.MAPPED){
+            throw new IOException("Mapped word lists can't be watched; load it in another format: " + this.url);
+        }
+        this.file = MappedDictionary.toPath(this.url).toAbsolutePath();
+        this.debounceMillis = debounceMillis;
+        this.service = this.file.getFileSystem().newWatchService();
+        try {
+            // Watch the directory: editors often save by writing a new file and renaming it over the old one.
+            this.file.getParent().register(this.service,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            try (FileChannel ch = FileChannel.open(this.file, StandardOpenOption.READ)) {
+                remember(ch, ch.size());
+            }
+        } catch (IOException ex) {
+            this.service.close();
+            throw ex;
+        }
+        this.reloader = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "hangman-reload");
+            t.setDaemon(true);
+            return t;
+        });
+        this.thread = new Thread(this::watchLoop, "hangman-watch");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    private void watchLoop() {
+        while (!this.closed){
+            WatchKey key;
+            try {
+                key = this.service.take();
+            } catch (InterruptedException|ClosedWatchServiceException ex) {
+                return;
+            }
+            for (WatchEvent<?> event : key.pollEvents()){
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW || this.file.getFileName().equals(event.context())){
+                    schedule();
+                }
+            }
+            if (!key.reset()){
+                return;
+            }
+        }
+    }
+
+    // Start the debounce time again.
+    private synchronized void schedule() {
+        if (this.closed){
+            return;
+        }
+        if (this.pending != null){
+            this.pending.cancel(false);
+        }
+        this.pending = this.reloader.schedule(this::reload, this.debounceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void reload() {
+        try {
+            Dictionary current = this.words.getDictionary();
+            Dictionary next = null;
+            try (FileChannel ch = FileChannel.open(this.file, StandardOpenOption.READ)) {
+                long size = ch.size();
+                if (current != Dictionaries.fallback() && isAppend(ch, size)){
+                    ByteBuffer added = ByteBuffer.allocate((int) Math.min(Integer.MAX_VALUE - 8, size - this.loadedSize));
+                    while (added.hasRemaining() && ch.read(added, this.loadedSize + added.position()) > 0){
+                        // Keep reading until the new part is all in.
+                    }
+                    added.flip();
+                    next = append(current, added);
+                    if (next != null){
+                        this.appends++;
+                    }
+                }
+                if (next == null){
+                    next = loadFormat().load(this.url);
+                }
+                remember(ch, size);
+            }
+            this.reloads++;
+            Dictionaries.registry().put(this.url, this.words.getFormat(), next);
+            this.words.swap(next);
+        } catch (IOException|RuntimeException ex) {
+            System.err.println("Could not reload word list " + this.file + ": " + ex.getMessage());
+        }
+    }
+
+    // A compiled list next to the text is out of date once the text changes, so reload the text itself.
+    private DictionaryFormat loadFormat() {
+        DictionaryFormat format = this.words.getFormat();
+        return format == DictionaryFormat.BINARY ? DictionaryFormat.PACKED : format;
+    }
+
+    private boolean isAppend(FileChannel ch, long size) throws IOException {
+        return this.loadedEndsLine && this.loadedSize > 0 && size > this.loadedSize
+                && size - this.loadedSize < Integer.MAX_VALUE - 8 && tail(ch, this.loadedSize) == this.loadedTail;
+    }
+
+    private void remember(FileChannel ch, long size) throws IOException {
+        this.loadedSize = size;
+        this.loadedTail = tail(ch, size);
+        ByteBuffer last = ByteBuffer.allocate(1);
+        this.loadedEndsLine = size > 0 && ch.read(last, size - 1) == 1 && last.get(0) == '\n';
+    }
+
+    // Checksum of the bytes just before an offset.
+    private static long tail(FileChannel ch, long end) throws IOException {
+        long start = Math.max(0, end - TAIL);
+        ByteBuffer buf = ByteBuffer.allocate((int) (end - start));
+        while (buf.hasRemaining() && ch.read(buf, start + buf.position()) > 0){
+            // Keep reading until the tail is all in.
+        }
+        buf.flip();
+        CRC32 crc = new CRC32();
+        crc.update(buf);
+        return crc.getValue();
+    }
+
+    /**
+     * Add the lines of some appended text to a dictionary, if it is a kind
+     * that can be extended without reading the whole list again.
+     *
+     * @param current - the dictionary before the append.
+     * @param added - the appended text.
+     * @return dictionary - the old words followed by the new ones, or null if a full reload is needed.
+     */
+    static Dictionary append(Dictionary current, ByteBuffer added) {
+        if (current instanceof PackedWordStore){
+            return ((PackedWordStore) current).append(added);
+        }
+        if (current instanceof ArrayDictionary){
+            return ((ArrayDictionary) current).append(added);
+        }
+        return null;
+    }
+
+    /**
+     * @return reloads - times the dictionary has been replaced.
+     */
+    int getReloads() {
+        return reloads;
+    }
+
+    /**
+     * @return appends - reloads that only parsed appended lines.
+     */
+    int getAppends() {
+        return appends;
+    }
+
+    /**
+     * Stop watching. A reload already running still finishes.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        synchronized (this){
+            if (this.pending != null){
+                this.pending.cancel(false);
+            }
+        }
+        this.reloader.shutdown();
+        try {
+            this.service.close();
+        } catch (IOException ex) {
+            // Closing anyway.
+        }
+    }
+}
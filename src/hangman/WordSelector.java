@@ -0,0 +1,84 @@
+/*
+ * Ways of choosing which word of a dictionary comes next.
+ */
+package hangman;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks word indexes from a dictionary. None of the built-in selectors
+ * allocate per pick.
+ */
+public interface WordSelector {
+
+    /**
+     * Pick the next word.
+     *
+     * @param dictionary - the words to pick from; must not be empty.
+     * @return index - position of the chosen word in the dictionary.
+     */
+    int next(Dictionary dictionary);
+
+    /**
+     * Any word, each equally likely, from the calling thread's own random
+     * source. Safe to share between threads.
+     *
+     * @return selector - a uniform selector.
+     */
+    static WordSelector uniform() {
+        return dictionary -> ThreadLocalRandom.current().nextInt(dictionary.size());
+    }
+
+    /**
+     * Any word, each equally likely, in an order fixed by the seed, so a run
+     * can be repeated exactly. Use from one thread at a time.
+     *
+     * @param seed - the seed.
+     * @return selector - a seeded selector.
+     */
+    static WordSelector seeded(long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        return dictionary -> random.nextInt(dictionary.size());
+    }
+
+    /**
+     * Every word once, in random order, before any word comes up again.
+     *
+     * @param seed - the seed; the same seed gives the same sequence.
+     * @return selector - a new shuffle bag.
+     */
+    static WordSelector shuffleBag(long seed) {
+        return new ShuffleBag(seed);
+    }
+
+    /**
+     * Make a selector from a setting such as the hangman.selection property:
+     * "uniform", "seeded:SEED", "bag" or "bag:SEED".
+     *
+     * @param spec - the setting; null or empty means uniform.
+     * @return selector - the matching selector.
+     * @throws IllegalArgumentException if the setting isn't recognised.
+     */
+    static WordSelector parse(String spec) throws IllegalArgumentException {
+        if (spec == null || spec.isEmpty() || spec.equals("uniform")){
+            return uniform();
+        }
+        int colon = spec.indexOf(':');
+        String mode = colon < 0 ? spec : spec.substring(0, colon);
+        long seed;
+        try {
+            seed = colon < 0 ? System.nanoTime() : Long.parseLong(spec.substring(colon + 1));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Bad seed in word selection \"" + spec + "\"", ex);
+        }
+        switch (mode){
+            case "seeded":
+                return seeded(seed);
+            case "bag":
+                return shuffleBag(seed);
+            default:
+                throw new IllegalArgumentException("Unknown word selection \"" + spec + "\"");
+        }
+    }
+}